@@ -0,0 +1,39 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Точка входа benchmarks.jar. Принимает обычные параметры JMH,
+ * но по умолчанию сохраняет результаты в target/jmh-result.json,
+ * чтобы их можно было сравнивать между версиями.
+ */
+public final class BenchmarkRunner {
+    private static final Path DEFAULT_RESULT = Path.of("target", "jmh-result.json");
+
+    private BenchmarkRunner() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            Files.createDirectories(DEFAULT_RESULT.getParent());
+            options.result(DEFAULT_RESULT.toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package searchengine.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетический русский корпус из словаря corpus/words.txt. Слова выбираются
+ * по закону Ципфа и складываются в предложения, поэтому частоты лемм и длины
+ * списков вхождений похожи на настоящие страницы. При одном и том же seed
+ * корпус получается одинаковым, и результаты разных запусков сравнимы.
+ */
+public final class Corpus {
+    private static final String WORDS = "/corpus/words.txt";
+
+    private final List<String> words;
+    private final double[] cumulative;
+
+    private Corpus(List<String> words) {
+        this.words = words;
+        this.cumulative = new double[words.size()];
+        double sum = 0;
+        for (int i = 0; i < words.size(); i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public static Corpus load() {
+        try (InputStream in = Corpus.class.getResourceAsStream(WORDS)) {
+            if (in == null) {
+                throw new IllegalStateException("Corpus resource not found: " + WORDS);
+            }
+            List<String> words = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    words.add(line);
+                }
+            }
+            return new Corpus(List.copyOf(words));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<String> words() {
+        return words;
+    }
+
+    /**
+     * @param count  число страниц
+     * @param length число слов на странице
+     */
+    public List<String> pages(int count, int length, long seed) {
+        Random random = new Random(seed);
+        List<String> pages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pages.add(page(random, length));
+        }
+        return pages;
+    }
+
+    private String page(Random random, int length) {
+        StringBuilder text = new StringBuilder(length * 9);
+        int sentence = 0;
+        for (int i = 0; i < length; i++) {
+            String word = word(random);
+            if (sentence == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+            sentence++;
+            if (sentence > 6 && random.nextInt(8) == 0) {
+                text.append(". ");
+                sentence = 0;
+            } else if (random.nextInt(12) == 0) {
+                text.append(", ");
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString().strip();
+    }
+
+    private String word(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return words.get(Math.min(index < 0 ? -index - 1 : index, words.size() - 1));
+    }
+}
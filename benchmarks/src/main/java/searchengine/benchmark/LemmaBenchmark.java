@@ -0,0 +1,71 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация: разбор страницы при индексации, набор лемм запроса
+ * и последовательность лемм для фраз в кавычках.
+ * Параметр cacheSize позволяет сравнить работу с прогретым кешем словоформ
+ * и почти без него.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaBenchmark {
+    private static final int PAGE_COUNT = 64;
+
+    @Param({"100000", "16"})
+    private int cacheSize;
+
+    @Param({"500"})
+    private int pageLength;
+
+    private LemmaUtils lemmaUtils;
+    private List<String> pages;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        lemmaUtils = LemmaUtils.create(cacheSize);
+        Corpus corpus = Corpus.load();
+        pages = corpus.pages(PAGE_COUNT, pageLength, 42);
+        query = String.join(" ", corpus.pages(1, 5, 7));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int size) {
+            int current = next;
+            next = (next + 1) % size;
+            return current;
+        }
+    }
+
+    @Benchmark
+    public Map<String, Occurrences> collectLemmaOccurrences(Cursor cursor) {
+        return lemmaUtils.collectLemmaOccurrences(pages.get(cursor.next(pages.size())));
+    }
+
+    @Benchmark
+    public Set<String> getLemmaSet() {
+        return lemmaUtils.getLemmaSet(query);
+    }
+
+    @Benchmark
+    public List<String> lemmaSequence() {
+        return lemmaUtils.lemmaSequence(query);
+    }
+}
@@ -0,0 +1,183 @@
+package searchengine.benchmark;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.repository.Query;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.PageContent;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.projection.LemmaRef;
+import searchengine.shared.SiteStatus;
+import searchengine.utility.ContentCodec;
+import searchengine.utility.LemmaUtils;
+
+import javax.persistence.Tuple;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение данных поиска через сущности и через проекции столбцов на Hibernate
+ * и H2 в режиме MySQL. Запросы проекций берутся из аннотаций {@link Query} репозиториев,
+ * поэтому измеряется ровно то, что выполняет приложение. Запросы сущностей повторяют
+ * прежнее чтение: леммы вместе с сайтом, страницы вместе с сайтом и содержимым.
+ * Снижение выделения памяти видно с профилировщиком -prof gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+    private static final String LEMMA_ENTITIES = "SELECT l FROM Lemma l JOIN FETCH l.site " +
+            "WHERE l.site.id = :siteId AND l.lemma IN :lemmas AND l.frequency < :maxFrequency";
+    private static final String PAGE_ENTITIES = "SELECT p FROM Page p JOIN FETCH p.site WHERE p.id IN :ids";
+    private static final String CONTENT_ENTITIES = "SELECT c FROM PageContent c WHERE c.pageId IN :ids";
+    private static final int QUERY_LEMMAS = 20;
+    private static final int RESULT_PAGES = 20;
+
+    @Param({"2000"})
+    private int pageCount;
+
+    @Param({"300"})
+    private int pageLength;
+
+    private SessionFactory sessionFactory;
+    private String lemmaRefs;
+    private String pageHeaders;
+    private String pageTexts;
+    private int siteId;
+    private List<String> lemmas;
+    private List<Integer> pageIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, NoSuchMethodException {
+        lemmaRefs = query(LemmaRepository.class, "findRefs", Integer.class, Collection.class, int.class);
+        pageHeaders = query(PageRepository.class, "findHeadersByIdIn", Collection.class);
+        pageTexts = query(PageRepository.class, "findTextsByIdIn", Collection.class);
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Site.class)
+                .addAnnotatedClass(Page.class)
+                .addAnnotatedClass(PageContent.class)
+                .addAnnotatedClass(Lemma.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:projections;MODE=MySQL;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .buildSessionFactory();
+        populate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<Lemma> lemmaEntities() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(LEMMA_ENTITIES, Lemma.class)
+                    .setParameter("siteId", siteId)
+                    .setParameter("lemmas", lemmas)
+                    .setParameter("maxFrequency", Integer.MAX_VALUE)
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<LemmaRef> lemmaProjections() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(lemmaRefs, LemmaRef.class)
+                    .setParameter("siteId", siteId)
+                    .setParameter("lemmas", lemmas)
+                    .setParameter("maxFrequency", Integer.MAX_VALUE)
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<Object> pageEntities() {
+        try (Session session = sessionFactory.openSession()) {
+            List<Object> result = new ArrayList<>(session.createQuery(PAGE_ENTITIES, Page.class)
+                    .setParameter("ids", pageIds)
+                    .list());
+            result.addAll(session.createQuery(CONTENT_ENTITIES, PageContent.class)
+                    .setParameter("ids", pageIds)
+                    .list());
+            return result;
+        }
+    }
+
+    @Benchmark
+    public List<Tuple> pageProjections() {
+        try (Session session = sessionFactory.openSession()) {
+            List<Tuple> result = new ArrayList<>(session.createQuery(pageHeaders, Tuple.class)
+                    .setParameter("ids", pageIds)
+                    .list());
+            result.addAll(session.createQuery(pageTexts, Tuple.class)
+                    .setParameter("ids", pageIds)
+                    .list());
+            return result;
+        }
+    }
+
+    /**
+     * Сохраняет сайт, страницы корпуса с содержимым и их леммы с частотой по числу страниц.
+     * Для запросов выбираются леммы из середины частотного списка и страницы вразброс.
+     */
+    private void populate() throws IOException {
+        LemmaUtils lemmaUtils = LemmaUtils.create(100_000);
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            Site site = new Site();
+            site.setName("benchmark");
+            site.setUrl("https://example.com");
+            site.setStatus(SiteStatus.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            session.persist(site);
+            int number = 0;
+            for (String text : Corpus.load().pages(pageCount, pageLength, 42)) {
+                Page page = new Page();
+                page.setSite(site);
+                page.setCode(200);
+                page.setPath("/page/" + number++);
+                page.setTitle(text.substring(0, Math.min(text.length(), 60)));
+                session.persist(page);
+                PageContent content = new PageContent();
+                content.setPageId(page.getId());
+                content.setContent(ContentCodec.compress("<html><body><p>" + text + "</p></body></html>"));
+                content.setText(ContentCodec.compress(text));
+                session.persist(content);
+                lemmaUtils.collectLemmaOccurrences(text).keySet().forEach(lemma -> frequencies.merge(lemma, 1, Integer::sum));
+                ids.add(page.getId());
+            }
+            frequencies.forEach((value, frequency) -> {
+                Lemma lemma = new Lemma();
+                lemma.setSite(site);
+                lemma.setLemma(value);
+                lemma.setFrequency(frequency);
+                session.persist(lemma);
+            });
+            session.getTransaction().commit();
+            siteId = site.getId();
+        }
+        List<String> byFrequency = new ArrayList<>(frequencies.keySet());
+        byFrequency.sort(Comparator.comparing((String lemma) -> -frequencies.get(lemma)).thenComparing(lemma -> lemma));
+        int from = Math.max(0, byFrequency.size() / 2 - QUERY_LEMMAS / 2);
+        lemmas = List.copyOf(byFrequency.subList(from, Math.min(from + QUERY_LEMMAS, byFrequency.size())));
+        Collections.shuffle(ids, new Random(7));
+        pageIds = List.copyOf(ids.subList(0, Math.min(RESULT_PAGES, ids.size())));
+    }
+
+    private static String query(Class<?> repository, String method, Class<?>... parameters) throws NoSuchMethodException {
+        return repository.getMethod(method, parameters).getAnnotation(Query.class).value();
+    }
+}
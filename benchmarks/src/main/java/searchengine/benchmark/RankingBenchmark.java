@@ -0,0 +1,86 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.repository.projection.LemmaRef;
+import searchengine.search.Postings;
+import searchengine.search.ShardRequest;
+import searchengine.search.ShardResult;
+import searchengine.search.TopK;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ранжирование в памяти: полный поиск по шарду сайта (объединение и пересечение
+ * списков вхождений, BM25, отбор лучших, прибавка за близость термов)
+ * и отдельно его шаги. Термы запроса берутся из середины частотного списка лемм,
+ * поэтому их списки вхождений длинные, а пересечение заметно меньше каждого из них.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+    private static final int WINDOW = 20;
+
+    @Param({"5000"})
+    private int pageCount;
+
+    @Param({"300"})
+    private int pageLength;
+
+    @Param({"1", "2", "3"})
+    private int termCount;
+
+    private SearchFixture fixture;
+    private ShardRequest request;
+    private List<Postings> termPostings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new SearchFixture(pageCount, pageLength);
+        List<LemmaRef> lemmas = fixture.lemmasByFrequency();
+        int first = lemmas.size() / 2;
+        Map<String, Set<String>> terms = new LinkedHashMap<>();
+        List<LemmaRef> selected = lemmas.subList(first, first + termCount);
+        selected.forEach(lemma -> terms.put(lemma.lemma(), Set.of(lemma.lemma())));
+        request = new ShardRequest(SearchFixture.SITE_ID, terms, List.of(), Integer.MAX_VALUE, WINDOW);
+        termPostings = selected.stream().map(fixture::postings).toList();
+    }
+
+    @Benchmark
+    public ShardResult search() {
+        return fixture.getShard().search(request);
+    }
+
+    @Benchmark
+    public Postings intersect() {
+        Postings matches = termPostings.get(0);
+        for (int i = 1; i < termPostings.size(); i++) {
+            matches = matches.intersect(termPostings.get(i));
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public Postings union() {
+        return Postings.union(termPostings);
+    }
+
+    @Benchmark
+    public TopK topK() {
+        Postings postings = termPostings.get(0);
+        TopK top = new TopK(WINDOW);
+        for (int i = 0; i < postings.size(); i++) {
+            top.offer(postings.pageId(i), postings.score(i));
+        }
+        top.sortDescending();
+        return top;
+    }
+}
@@ -0,0 +1,191 @@
+package searchengine.benchmark;
+
+import searchengine.config.SearchSettings;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.projection.LemmaRef;
+import searchengine.repository.projection.PagePositions;
+import searchengine.search.*;
+import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+import searchengine.utility.PositionCodec;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Индекс одного сайта, построенный в памяти из синтетического корпуса
+ * тем же путём, что и при индексации: лемматизация страницы, списки вхождений
+ * {@link PostingList}, длины страниц в {@link CollectionStatistics}
+ * и закодированные позиции словоформ. Репозитории заменены заглушками,
+ * которые отвечают из этого индекса, поэтому {@link LocalSearchShard}
+ * работает без базы данных.
+ */
+public class SearchFixture {
+    public static final int SITE_ID = 1;
+
+    private final Map<String, LemmaRef> lemmas = new HashMap<>();
+    private final Map<Integer, PostingList> postings = new HashMap<>();
+    private final Map<Long, byte[]> positions = new HashMap<>();
+    private final CollectionStatistics statistics = new CollectionStatistics(null);
+    private final LocalSearchShard shard;
+
+    public SearchFixture(int pageCount, int pageLength) throws IOException {
+        LemmaUtils lemmaUtils = LemmaUtils.create(100_000);
+        Map<String, Integer> frequencies = new HashMap<>();
+        Map<String, Integer> ids = new HashMap<>();
+        int pageId = 0;
+        for (String text : Corpus.load().pages(pageCount, pageLength, 42)) {
+            pageId++;
+            int length = 0;
+            for (Map.Entry<String, Occurrences> entry : lemmaUtils.collectLemmaOccurrences(text).entrySet()) {
+                int lemmaId = ids.computeIfAbsent(entry.getKey(), lemma -> ids.size() + 1);
+                Occurrences occurrences = entry.getValue();
+                frequencies.merge(entry.getKey(), 1, Integer::sum);
+                postings.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageId, occurrences.count());
+                positions.put(key(pageId, lemmaId), PositionCodec.encode(occurrences.positions()));
+                length += occurrences.count();
+            }
+            statistics.addPage(SITE_ID, pageId, length);
+        }
+        ids.forEach((lemma, id) -> lemmas.put(lemma, new LemmaRef(id, lemma, frequencies.get(lemma))));
+        SearchSettings settings = new SearchSettings();
+        shard = new LocalSearchShard(settings, stub(LemmaRepository.class, "findRefs", this::findRefs),
+                stub(IndexRepository.class, "findPositions", this::findPositions), new Store(),
+                new Bm25Scorer(settings.getBm25K1(), settings.getBm25B()), statistics);
+    }
+
+    public LocalSearchShard getShard() {
+        return shard;
+    }
+
+    public CollectionStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return леммы по убыванию числа страниц, на которых они встречаются
+     */
+    public List<LemmaRef> lemmasByFrequency() {
+        List<LemmaRef> sorted = new ArrayList<>(lemmas.values());
+        sorted.sort(Comparator.comparingInt(LemmaRef::frequency).reversed().thenComparing(LemmaRef::lemma));
+        return sorted;
+    }
+
+    public Postings postings(LemmaRef lemma) {
+        return postings.get(lemma.id()).snapshot();
+    }
+
+    private List<LemmaRef> findRefs(Object[] args) {
+        Collection<?> requested = (Collection<?>) args[1];
+        int maxFrequency = (int) args[2];
+        List<LemmaRef> found = new ArrayList<>(requested.size());
+        for (Object lemma : requested) {
+            LemmaRef ref = lemmas.get(lemma);
+            if (ref != null && ref.frequency() < maxFrequency) {
+                found.add(ref);
+            }
+        }
+        return found;
+    }
+
+    private List<PagePositions> findPositions(Object[] args) {
+        Collection<?> pageIds = (Collection<?>) args[0];
+        Collection<?> lemmaIds = (Collection<?>) args[1];
+        List<PagePositions> found = new ArrayList<>();
+        for (Object pageId : pageIds) {
+            for (Object lemmaId : lemmaIds) {
+                byte[] encoded = positions.get(key((Integer) pageId, (Integer) lemmaId));
+                if (encoded != null) {
+                    found.add(new Positions((Integer) pageId, (Integer) lemmaId, encoded));
+                }
+            }
+        }
+        return found;
+    }
+
+    private static long key(int pageId, int lemmaId) {
+        return (long) pageId << 32 | lemmaId;
+    }
+
+    /**
+     * Реализует один метод репозитория; вызов любого другого метода — ошибка бенчмарка.
+     */
+    private static <T> T stub(Class<T> type, String method, Function<Object[], Object> implementation) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, called, args) -> {
+            if (called.getName().equals(method)) {
+                return implementation.apply(args);
+            }
+            if (called.getDeclaringClass() == Object.class) {
+                return switch (called.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + called.getName());
+        }));
+    }
+
+    private class Store implements PostingStore {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void add(int lemmaId, int pageId, float rank) {
+            postings.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageId, rank);
+        }
+
+        @Override
+        public void removePage(int pageId, Collection<Integer> lemmaIds) {
+            lemmaIds.forEach(lemmaId -> postings.get(lemmaId).remove(pageId));
+        }
+
+        @Override
+        public void clear() {
+            postings.clear();
+        }
+
+        @Override
+        public Postings find(int lemmaId) {
+            PostingList list = postings.get(lemmaId);
+            return list == null ? Postings.EMPTY : list.snapshot();
+        }
+
+        @Override
+        public long getPostingCount() {
+            return postings.values().stream().mapToLong(PostingList::size).sum();
+        }
+    }
+
+    private static class Positions implements PagePositions {
+        private final Integer pageId;
+        private final Integer lemmaId;
+        private final byte[] encoded;
+
+        Positions(Integer pageId, Integer lemmaId, byte[] encoded) {
+            this.pageId = pageId;
+            this.lemmaId = lemmaId;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public Integer getPageId() {
+            return pageId;
+        }
+
+        @Override
+        public Integer getLemmaId() {
+            return lemmaId;
+        }
+
+        @Override
+        public byte[] getPositions() {
+            return encoded;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.search.SnippetBuilder;
+import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+import searchengine.utility.PositionCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение сниппета по сохранённому тексту страницы: декодирование позиций
+ * словоформ из index_table и вырезание фрагментов с выделением.
+ * Леммы запроса берутся из середины частотного списка страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+    private static final int SNIPPET_LENGTH = 300;
+
+    @Param({"2000"})
+    private int pageLength;
+
+    @Param({"1", "3"})
+    private int lemmaCount;
+
+    private String text;
+    private List<byte[]> encodedOffsets;
+    private List<int[]> offsets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        LemmaUtils lemmaUtils = LemmaUtils.create(100_000);
+        text = Corpus.load().pages(1, pageLength, 42).get(0);
+        List<Map.Entry<String, Occurrences>> lemmas = new ArrayList<>(lemmaUtils.collectLemmaOccurrences(text).entrySet());
+        lemmas.sort(Comparator.comparingInt((Map.Entry<String, Occurrences> i) -> i.getValue().count()).reversed()
+                .thenComparing(Map.Entry::getKey));
+        int from = lemmas.size() / 2;
+        encodedOffsets = new ArrayList<>();
+        offsets = new ArrayList<>();
+        for (Map.Entry<String, Occurrences> lemma : lemmas.subList(from, from + lemmaCount)) {
+            offsets.add(lemma.getValue().offsets());
+            encodedOffsets.add(PositionCodec.encode(lemma.getValue().offsets()));
+        }
+    }
+
+    @Benchmark
+    public String buildSnippet() {
+        return SnippetBuilder.build(text, offsets, SNIPPET_LENGTH);
+    }
+
+    @Benchmark
+    public String decodeAndBuildSnippet() {
+        List<int[]> decoded = new ArrayList<>(encodedOffsets.size());
+        for (byte[] encoded : encodedOffsets) {
+            decoded.add(PositionCodec.decode(encoded));
+        }
+        return SnippetBuilder.build(text, decoded, SNIPPET_LENGTH);
+    }
+}
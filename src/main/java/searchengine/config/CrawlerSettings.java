@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    private int maxInFlight = 8;
+    private int fetchThreads = 8;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int analyzeThreads = Runtime.getRuntime().availableProcessors();
+    private int persistThreads = 4;
+    private int stageQueueCapacity = 256;
+    private int frontierCapacity = 100_000;
+    private int maxPages = 50_000;
+    private long delay = 500;
+    private String userAgent = "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
+    private String referrer = "http://www.google.com";
+    private long connectTimeout = 5000;
+    private long readTimeout = 10000;
+    private long maxBodySize = 5 * 1024 * 1024;
+    private boolean incremental = false;
+}
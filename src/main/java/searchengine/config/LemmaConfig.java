@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.metrics.MetricsRegistry;
+import searchengine.utility.LemmaUtils;
+
+import java.io.IOException;
+
+@Configuration
+public class LemmaConfig {
+
+    /**
+     * Словарь морфологии загружается один раз при старте приложения
+     * и используется всеми потоками обходчика и поиска.
+     */
+    @Bean
+    public LemmaUtils lemmaUtils(@Value("${lemma-settings.cache-size:100000}") int cacheSize,
+                                 MetricsRegistry metrics) throws IOException {
+        return LemmaUtils.create(cacheSize,
+                metrics.timer("lemma_analysis_seconds", "Page lemmatization time"),
+                metrics.counter("lemma_analyzed_bytes", "UTF-8 bytes of page text lemmatized"));
+    }
+}
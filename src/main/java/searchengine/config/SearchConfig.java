@@ -0,0 +1,41 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.search.*;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+@Configuration
+public class SearchConfig {
+
+    /**
+     * Формула релевантности выбирается параметром search-settings.scorer:
+     * bm25 или sum (сумма частот лемм, как раньше).
+     */
+    @Bean
+    public Scorer scorer(SearchSettings settings) {
+        return switch (settings.getScorer().toLowerCase()) {
+            case "bm25" -> new Bm25Scorer(settings.getBm25K1(), settings.getBm25B());
+            case "sum" -> new SumScorer();
+            default -> throw new IllegalArgumentException("Unknown scorer: " + settings.getScorer());
+        };
+    }
+
+    /**
+     * Хранилище вхождений выбирается параметром search-settings.posting-store:
+     * memory, segment или database.
+     */
+    @Bean
+    public PostingStore postingStore(SearchSettings settings, DataSource dataSource, CollectionStatistics statistics) {
+        return switch (settings.getPostingStore().toLowerCase()) {
+            case "memory" -> new InvertedIndex(dataSource, statistics);
+            case "segment" -> new SegmentPostingStore(dataSource, statistics, Path.of(settings.getSegmentDirectory()),
+                    settings.getSegmentFlushPostings(), settings.getSegmentFlushInterval(),
+                    settings.getSegmentMergeFactor(), settings.getSegmentMaxBytes());
+            case "database" -> new NoopPostingStore();
+            default -> throw new IllegalArgumentException("Unknown posting store: " + settings.getPostingStore());
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private String postingStore = "memory";
+    private String segmentDirectory = "data/segments";
+    private long segmentFlushPostings = 1_000_000;
+    private long segmentFlushInterval = 30_000;
+    private int segmentMergeFactor = 8;
+    private long segmentMaxBytes = 1024L * 1024 * 1024;
+    private String scorer = "bm25";
+    private float bm25K1 = 1.2f;
+    private float bm25B = 0.75f;
+    private float proximityWeight = 0.5f;
+    private int rerankWindow = 200;
+    private int searchThreads = Runtime.getRuntime().availableProcessors();
+    private int searchQueueCapacity = 256;
+    private long searchTimeout = 2000;
+    private int snippetThreads = Runtime.getRuntime().availableProcessors();
+    private int snippetConcurrency = 4;
+    private int suggestMaxLimit = 50;
+    private int suggestMergeThreshold = 10_000;
+    private int fuzzyMaxDistance = 2;
+    private int fuzzyMaxExpansions = 3;
+    private boolean resultCache = true;
+    private int resultCacheMaxEntries = 10_000;
+    private long resultCacheMaxBytes = 64 * 1024 * 1024;
+}
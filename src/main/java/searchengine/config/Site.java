@@ -8,4 +8,20 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    private Long delay;
+    private Double requestsPerSecond;
+
+    /**
+     * Минимальный интервал между запросами к хосту сайта в миллисекундах.
+     * Явно заданная задержка имеет приоритет над числом запросов в секунду.
+     */
+    public long crawlDelay(long defaultDelay) {
+        if (delay != null) {
+            return delay;
+        }
+        if (requestsPerSecond != null && requestsPerSecond > 0) {
+            return (long) (1000 / requestsPerSecond);
+        }
+        return defaultDelay;
+    }
 }
@@ -1,21 +1,39 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import searchengine.dto.index.IndexResponse;
 import searchengine.dto.index.SearchResultDto;
+import searchengine.dto.index.SearchSnippetData;
+import searchengine.dto.metrics.MetricsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.dto.suggest.SuggestResponse;
 import searchengine.services.IndexService;
+import searchengine.services.MetricsService;
+import searchengine.services.SearchStream;
 import searchengine.services.StatisticsService;
+import searchengine.services.SuggestService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class ApiController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType PROMETHEUS = MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8");
 
     private final StatisticsService statisticsService;
     private final IndexService indexService;
+    private final SuggestService suggestService;
+    private final MetricsService metricsService;
+    private final ObjectMapper objectMapper;
 
 
     @GetMapping("/statistics")
@@ -42,10 +60,77 @@ public class ApiController {
     public ResponseEntity<SearchResultDto> statistics(@RequestParam(name = "query") String query,
                                                       @RequestParam(name = "site", required = false) String site,
                                                       @RequestParam(name = "offset", defaultValue = "0") Integer offset,
-                                                      @RequestParam(name = "limit", defaultValue = "20") Integer limit) {
-        var resultDto = indexService.search(query, site, offset, limit);
+                                                      @RequestParam(name = "limit", defaultValue = "20") Integer limit,
+                                                      @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy) {
+        var resultDto = indexService.search(query, site, offset, limit, fuzzy);
         if(!resultDto.isResult())
             return ResponseEntity.badRequest().body(resultDto);
         return ResponseEntity.ok(resultDto);
     }
+
+    /**
+     * Поиск с потоковой выдачей в формате NDJSON. Первая строка — ответ /search,
+     * в котором у найденных страниц ещё нет заголовков и сниппетов. Затем по одной
+     * строке {@link SearchSnippetData} на каждую страницу в порядке готовности;
+     * поле index указывает на страницу в data первой строки.
+     * Если ответ взят из кеша, заголовки и сниппеты есть уже в первой строке.
+     */
+    @GetMapping(value = "/search/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> searchStream(@RequestParam(name = "query") String query,
+                                                              @RequestParam(name = "site", required = false) String site,
+                                                              @RequestParam(name = "offset", defaultValue = "0") Integer offset,
+                                                              @RequestParam(name = "limit", defaultValue = "20") Integer limit,
+                                                              @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy) {
+        SearchStream stream = indexService.searchStream(query, site, offset, limit, fuzzy);
+        SearchResultDto head = stream.getHead();
+        StreamingResponseBody body = out -> {
+            try (stream) {
+                writeLine(out, head);
+                stream.forEachSnippet(snippet -> {
+                    synchronized (out) {
+                        try {
+                            writeLine(out, snippet);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return (head.isResult() ? ResponseEntity.ok() : ResponseEntity.badRequest())
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(@RequestParam(name = "query") String query,
+                                                   @RequestParam(name = "limit", defaultValue = "10") Integer limit) {
+        return ResponseEntity.ok(suggestService.suggest(query, limit));
+    }
+
+    /**
+     * Счётчики, датчики и таймеры обхода, индексации и поиска; длительности в миллисекундах.
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<MetricsResponse> metrics() {
+        return ResponseEntity.ok(metricsService.getMetrics());
+    }
+
+    /**
+     * Те же метрики в текстовом формате Prometheus.
+     */
+    @GetMapping(value = "/metrics/prometheus", produces = "text/plain")
+    public ResponseEntity<String> prometheus() {
+        return ResponseEntity.ok()
+                .contentType(PROMETHEUS)
+                .body(metricsService.getPrometheusText());
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
 }
@@ -0,0 +1,28 @@
+package searchengine.crawler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.metrics.CrawlerMetrics;
+import searchengine.model.Site;
+import searchengine.services.SiteCounters;
+import searchengine.services.SiteService;
+import searchengine.utility.LemmaUtils;
+
+@Component
+@RequiredArgsConstructor
+public class CrawlerFactory {
+    private final CrawlerSettings settings;
+    private final SiteService siteService;
+    private final HostScheduler hostScheduler;
+    private final PageFetcher pageFetcher;
+    private final IndexingPipeline pipeline;
+    private final LemmaUtils lemmaUtils;
+    private final SiteCounters siteCounters;
+    private final CrawlerMetrics metrics;
+
+    public SiteCrawler create(Site site, long delay) {
+        return new SiteCrawler(site, delay, settings, siteService, hostScheduler, pageFetcher, pipeline, lemmaUtils,
+                siteCounters, metrics);
+    }
+}
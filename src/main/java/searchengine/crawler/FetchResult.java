@@ -0,0 +1,77 @@
+package searchengine.crawler;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
+@Getter
+@AllArgsConstructor
+public class FetchResult {
+    private final String url;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    public String getContentType() {
+        return headers.firstValue("Content-Type").orElse("");
+    }
+
+    public String getEtag() {
+        return headers.firstValue("ETag").orElse(null);
+    }
+
+    public String getLastModified() {
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    /**
+     * @return SHA-256 тела ответа в шестнадцатеричном виде
+     */
+    public String contentHash() {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Разбираются и индексируются только HTML и XHTML. Ответ без Content-Type
+     * тоже считается HTML: тип таких страниц определяет Jsoup по содержимому.
+     */
+    public boolean isHtml() {
+        String mediaType = getContentType().split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return mediaType.isEmpty() || mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml");
+    }
+
+    /**
+     * Разбирает уже полученное тело ответа. Кодировка берётся из заголовка
+     * Content-Type, а если её там нет, определяется Jsoup по meta-тегам.
+     */
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), extractCharset(), url);
+    }
+
+    private String extractCharset() {
+        for (String param : getContentType().split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                return trimmed.substring(8).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+}
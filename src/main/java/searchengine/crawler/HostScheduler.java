@@ -0,0 +1,48 @@
+package searchengine.crawler;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Планировщик вежливого обхода: для каждого хоста выдаёт следующий свободный
+ * интервал времени и запускает задачу не раньше него. Ожидание происходит
+ * в очереди таймера, поэтому рабочие потоки обходчика не блокируются.
+ */
+@Component
+public class HostScheduler {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "host-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentHashMap<String, AtomicLong> nextSlots = new ConcurrentHashMap<>();
+
+    /**
+     * @param host          хост, к которому будет обращаться задача
+     * @param delayMillis   минимальный интервал между запросами к хосту
+     * @param task          задача; должна быстро передавать работу в свой пул потоков
+     */
+    public void schedule(String host, long delayMillis, Runnable task) {
+        long now = System.nanoTime();
+        long interval = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        AtomicLong next = nextSlots.computeIfAbsent(host, h -> new AtomicLong(now));
+        long previous = next.getAndUpdate(slot -> Math.max(slot, now) + interval);
+        long wait = Math.max(previous, now) - now;
+        if (wait == 0) {
+            timer.execute(task);
+        } else {
+            timer.schedule(task, wait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
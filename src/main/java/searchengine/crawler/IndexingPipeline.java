@@ -0,0 +1,74 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Общие для всех сайтов ступени индексации: загрузка (пул {@link PageFetcher}),
+ * разбор HTML и извлечение ссылок, лемматизация и запись в базу.
+ * Размер пула и очереди каждой ступени задаётся в crawler-settings,
+ * а глубина очередей периодически пишется в лог.
+ */
+@Component
+public class IndexingPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(IndexingPipeline.class);
+
+    private final PageFetcher pageFetcher;
+    private final PipelineStage parseStage;
+    private final PipelineStage analyzeStage;
+    private final PipelineStage persistStage;
+
+    public IndexingPipeline(CrawlerSettings settings, PageFetcher pageFetcher) {
+        this.pageFetcher = pageFetcher;
+        this.parseStage = new PipelineStage("parse", settings.getParseThreads(), settings.getStageQueueCapacity());
+        this.analyzeStage = new PipelineStage("analyze", settings.getAnalyzeThreads(), settings.getStageQueueCapacity());
+        this.persistStage = new PipelineStage("persist", settings.getPersistThreads(), settings.getStageQueueCapacity());
+    }
+
+    public PipelineStage getParseStage() {
+        return parseStage;
+    }
+
+    public PipelineStage getAnalyzeStage() {
+        return analyzeStage;
+    }
+
+    public PipelineStage getPersistStage() {
+        return persistStage;
+    }
+
+    /**
+     * @return число страниц, ожидающих каждую ступень; для загрузки — число запросов в полёте
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        depths.put("fetch", pageFetcher.getInFlight());
+        for (PipelineStage stage : List.of(parseStage, analyzeStage, persistStage)) {
+            depths.put(stage.getName(), stage.getQueueDepth());
+        }
+        return depths;
+    }
+
+    @Scheduled(fixedDelayString = "${crawler-settings.queue-report-interval:10000}")
+    public void reportQueueDepths() {
+        Map<String, Integer> depths = getQueueDepths();
+        if (depths.values().stream().anyMatch(i -> i > 0)) {
+            logger.info("Indexing pipeline queues: {}", depths);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseStage.shutdown();
+        analyzeStage.shutdown();
+        persistStage.shutdown();
+    }
+}
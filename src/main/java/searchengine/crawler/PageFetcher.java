@@ -0,0 +1,171 @@
+package searchengine.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.metrics.CrawlerMetrics;
+import searchengine.repository.projection.PageState;
+
+import javax.annotation.PreDestroy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий для обходчика и indexPage загрузчик страниц. Один {@link HttpClient}
+ * переиспользует keep-alive соединения и договаривается о HTTP/2,
+ * если сервер его поддерживает. Тело ответа ограничено по размеру.
+ */
+@Component
+public class PageFetcher {
+    private final CrawlerSettings settings;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CrawlerMetrics metrics;
+
+    public PageFetcher(CrawlerSettings settings, CrawlerMetrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(settings.getFetchThreads(), r -> {
+            Thread thread = new Thread(r, "fetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeout()))
+                .build();
+    }
+
+    public CompletableFuture<FetchResult> fetch(String url) {
+        return fetch(url, null);
+    }
+
+    /**
+     * Загружает страницу условным запросом: если известны ETag или Last-Modified
+     * прошлой версии, сервер может ответить 304 без тела.
+     */
+    public CompletableFuture<FetchResult> fetch(String url, PageState known) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(settings.getReadTimeout()))
+                    .header("User-Agent", settings.getUserAgent())
+                    .header("Referer", settings.getReferrer())
+                    .GET();
+            if (known != null && known.getEtag() != null) {
+                builder.header("If-None-Match", known.getEtag());
+            }
+            if (known != null && known.getLastModified() != null) {
+                builder.header("If-Modified-Since", known.getLastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        return client.sendAsync(request, info -> new LimitedBodySubscriber(settings.getMaxBodySize()))
+                .whenComplete((response, ex) -> {
+                    inFlight.decrementAndGet();
+                    metrics.getFetch().recordSince(start);
+                    if (ex != null) {
+                        metrics.getFetchErrors().increment();
+                    } else {
+                        metrics.getFetchedBytes().add(response.body().length);
+                    }
+                })
+                .thenCompose(response -> toResult(request.uri(), response));
+    }
+
+    /**
+     * Результат строится по адресу после перенаправлений: от него Jsoup разрешает
+     * относительные ссылки и по нему страница сохраняется. Перенаправление
+     * на другой хост отбрасывается, чтобы не сохранить чужую страницу под путём сайта.
+     */
+    private static CompletableFuture<FetchResult> toResult(URI requested, HttpResponse<byte[]> response) {
+        URI uri = response.uri();
+        if (uri.getHost() == null || !uri.getHost().equalsIgnoreCase(requested.getHost())) {
+            return CompletableFuture.failedFuture(new IOException("Redirected to another host: " + uri));
+        }
+        return CompletableFuture.completedFuture(
+                new FetchResult(uri.toString(), response.statusCode(), response.headers(), response.body()));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Накапливает тело ответа и прерывает загрузку, как только оно превышает лимит.
+     */
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final long limit;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                if (buffer.size() + item.remaining() > limit) {
+                    subscription.cancel();
+                    result.completeExceptionally(new IOException("Response body exceeds " + limit + " bytes"));
+                    return;
+                }
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                buffer.writeBytes(bytes);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(buffer.toByteArray());
+        }
+    }
+}
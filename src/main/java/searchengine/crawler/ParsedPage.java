@@ -0,0 +1,24 @@
+package searchengine.crawler;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Разобранная страница: исходный HTML для хранения, а также заголовок
+ * и текст, которые сохраняются при индексации, чтобы поиск строил
+ * сниппеты без повторного разбора HTML.
+ */
+public record ParsedPage(String content, String title, String text) {
+    public static final ParsedPage EMPTY = new ParsedPage("", "", "");
+    private static final int MAX_TITLE_LENGTH = 500;
+
+    public static ParsedPage of(Document document) {
+        if (document == null) {
+            return EMPTY;
+        }
+        String title = document.title();
+        if (title.length() > MAX_TITLE_LENGTH) {
+            title = title.substring(0, MAX_TITLE_LENGTH);
+        }
+        return new ParsedPage(document.toString(), title, document.text());
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.crawler;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ступень конвейера индексации: пул потоков фиксированного размера с
+ * ограниченной очередью. Когда очередь заполнена, {@link #execute(Runnable)}
+ * блокирует вызывающий поток предыдущей ступени, и давление передаётся
+ * назад по рабочим потокам конвейера.
+ * <p>
+ * Общие потоки (таймер {@link HostScheduler}, потоки завершения HTTP-клиента) блокировать нельзя,
+ * поэтому место в первой ступени резервируется заранее через {@link #tryReserve()},
+ * ещё до загрузки страницы. Если места нет, обходчик ждёт его через {@link #whenAvailable(Runnable)}.
+ */
+public class PipelineStage implements Executor {
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final Semaphore capacity;
+    private final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+
+    public PipelineStage(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.capacity = new Semaphore(threads + queueCapacity);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        capacity.acquireUninterruptibly();
+        submit(task);
+    }
+
+    /**
+     * Занимает место в ступени без ожидания.
+     *
+     * @return резерв, через который задача выполняется без блокировки, или null, если ступень заполнена
+     */
+    public Reservation tryReserve() {
+        return capacity.tryAcquire() ? new Reservation() : null;
+    }
+
+    /**
+     * Выполняет действие, когда в ступени освободится место; если оно уже есть, то сразу.
+     * Действие выполняется в освободившем место потоке и не должно блокироваться.
+     */
+    public void whenAvailable(Runnable waiter) {
+        waiters.add(waiter);
+        if (capacity.availablePermits() > 0) {
+            wakeWaiters();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void submit(Runnable task) {
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release();
+            throw e;
+        }
+    }
+
+    private void release() {
+        capacity.release();
+        wakeWaiters();
+    }
+
+    private void wakeWaiters() {
+        for (int i = waiters.size(); i > 0; i--) {
+            Runnable waiter = waiters.poll();
+            if (waiter == null) {
+                return;
+            }
+            waiter.run();
+        }
+    }
+
+    /**
+     * Занятое заранее место в ступени на одну задачу. Если задача так и не передана,
+     * например загрузка страницы не удалась, место нужно вернуть через {@link #release()}.
+     */
+    public class Reservation implements Executor {
+        private final AtomicBoolean used = new AtomicBoolean();
+
+        @Override
+        public void execute(Runnable task) {
+            if (!used.compareAndSet(false, true)) {
+                throw new RejectedExecutionException("Reservation of stage " + name + " is already used");
+            }
+            submit(task);
+        }
+
+        /**
+         * Возвращает место, если задача не была передана; иначе ничего не делает.
+         */
+        public void release() {
+            if (used.compareAndSet(false, true)) {
+                PipelineStage.this.release();
+            }
+        }
+    }
+}
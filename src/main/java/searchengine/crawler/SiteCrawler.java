@@ -0,0 +1,344 @@
+package searchengine.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.config.CrawlerSettings;
+import searchengine.metrics.Counter;
+import searchengine.metrics.CrawlerMetrics;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.projection.PageState;
+import searchengine.services.SiteCounters;
+import searchengine.services.SiteService;
+import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+import searchengine.utility.UrlUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход одного сайта через очередь адресов (frontier).
+ * Посещённые адреса хранятся в памяти в нормализованном виде,
+ * поэтому проверка дубликатов не обращается к базе данных.
+ * Частоту запросов к хосту ограничивает {@link HostScheduler}:
+ * адрес загружается только когда наступает его очередь.
+ * <p>
+ * Каждая страница проходит ступени {@link IndexingPipeline}: асинхронная загрузка,
+ * разбор и извлечение ссылок, лемматизация, запись в базу. Число страниц сайта,
+ * одновременно находящихся в конвейере, ограничено crawler-settings.max-in-flight.
+ * Место в ступени разбора резервируется до загрузки: если ступень заполнена,
+ * новые загрузки не планируются, пока место не освободится, и ни таймер планировщика,
+ * ни потоки HTTP-клиента не блокируются.
+ * <p>
+ * В инкрементальном режиме страницы запрашиваются с условными заголовками,
+ * неизменившиеся страницы не лемматизируются повторно, а страницы,
+ * которых больше нет на сайте, удаляются после завершения обхода.
+ */
+public class SiteCrawler {
+    private static final Logger logger = LoggerFactory.getLogger(SiteCrawler.class);
+
+    private final Site site;
+    private final String rootUrl;
+    private final String host;
+    private final long delay;
+    private final CrawlerSettings settings;
+    private final SiteService siteService;
+    private final HostScheduler hostScheduler;
+    private final PageFetcher pageFetcher;
+    private final IndexingPipeline pipeline;
+    private final LemmaUtils lemmaUtils;
+    private final SiteCounters siteCounters;
+    private final CrawlerMetrics metrics;
+    private final Counter processedPages;
+    private final Counter failedPages;
+
+    private final BlockingQueue<String> frontier;
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicBoolean waitingForStage = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean stopped;
+    private volatile boolean truncated;
+    private Map<String, PageState> knownPages = Map.of();
+
+    SiteCrawler(Site site, long delay, CrawlerSettings settings, SiteService siteService, HostScheduler hostScheduler,
+                PageFetcher pageFetcher, IndexingPipeline pipeline, LemmaUtils lemmaUtils, SiteCounters siteCounters,
+                CrawlerMetrics metrics) {
+        this.site = site;
+        this.rootUrl = UrlUtils.normalize(site.getUrl());
+        this.host = rootUrl == null ? null : UrlUtils.extractDomain(rootUrl);
+        this.delay = delay;
+        this.settings = settings;
+        this.siteService = siteService;
+        this.hostScheduler = hostScheduler;
+        this.pageFetcher = pageFetcher;
+        this.pipeline = pipeline;
+        this.lemmaUtils = lemmaUtils;
+        this.siteCounters = siteCounters;
+        this.metrics = metrics;
+        this.processedPages = metrics.pages(site.getUrl());
+        this.failedPages = metrics.errors(site.getUrl());
+        this.frontier = new LinkedBlockingQueue<>(settings.getFrontierCapacity());
+    }
+
+    /**
+     * Обходит сайт и возвращает управление, когда очередь опустела
+     * и все страницы прошли конвейер, либо после вызова {@link #stop()}.
+     */
+    public void crawl() throws InterruptedException {
+        if (rootUrl == null) {
+            throw new IllegalArgumentException("Invalid site URL: " + site.getUrl());
+        }
+        if (settings.isIncremental()) {
+            knownPages = siteService.findPageStates(site);
+        }
+        enqueue(rootUrl);
+        finished.await();
+        logger.info("Site {} crawled, {} pages visited", site.getUrl(), visited.size());
+        if (!stopped && !truncated && !knownPages.isEmpty()) {
+            deleteDisappearedPages();
+        }
+    }
+
+    private void deleteDisappearedPages() {
+        Set<String> disappeared = new HashSet<>(knownPages.keySet());
+        visited.forEach(url -> disappeared.remove(UrlUtils.extractPath(url)));
+        if (!disappeared.isEmpty()) {
+            siteService.deletePages(site, disappeared);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        frontier.clear();
+        finished.countDown();
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Забирает адреса из очереди, пока число страниц сайта в конвейере
+     * меньше допустимого и в ступени разбора есть место, и резервирует
+     * для них время у планировщика. Если места нет, обход продолжится,
+     * когда оно освободится.
+     */
+    private void dispatch() {
+        PipelineStage parseStage = pipeline.getParseStage();
+        while (!stopped) {
+            if (frontier.isEmpty()) {
+                return;
+            }
+            int current = outstanding.get();
+            if (current >= settings.getMaxInFlight()) {
+                return;
+            }
+            if (!outstanding.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            PipelineStage.Reservation slot = parseStage.tryReserve();
+            if (slot == null) {
+                outstanding.decrementAndGet();
+                if (waitingForStage.compareAndSet(false, true)) {
+                    parseStage.whenAvailable(() -> {
+                        waitingForStage.set(false);
+                        dispatch();
+                    });
+                }
+                return;
+            }
+            String url = frontier.poll();
+            if (url == null) {
+                slot.release();
+                outstanding.decrementAndGet();
+                continue;
+            }
+            hostScheduler.schedule(host, delay, () -> fetch(url, slot));
+        }
+    }
+
+    /**
+     * Ступени присоединяются до начала загрузки: тогда каждую следующую ступень
+     * запускает поток предыдущей, а не таймер планировщика, даже если загрузка закончится сразу.
+     *
+     * @param slot место в ступени разбора, занятое для этой страницы в {@link #dispatch()}
+     */
+    private void fetch(String url, PipelineStage.Reservation slot) {
+        if (stopped) {
+            slot.release();
+            return;
+        }
+        CompletableFuture<FetchResult> fetched = new CompletableFuture<>();
+        fetched.thenApplyAsync(result -> parse(url, result), slot)
+                .thenApplyAsync(this::analyze, pipeline.getAnalyzeStage())
+                .thenAcceptAsync(this::persist, pipeline.getPersistStage())
+                .whenComplete((ignored, ex) -> {
+                    slot.release();
+                    if (ex != null) {
+                        siteCounters.addError(site.getId());
+                        failedPages.increment();
+                        logger.error("Error while indexing {} | {}", url, ex.getMessage());
+                    } else {
+                        processedPages.increment();
+                    }
+                    outstanding.decrementAndGet();
+                    if (pending.decrementAndGet() == 0) {
+                        finished.countDown();
+                    }
+                    dispatch();
+                });
+        pageFetcher.fetch(url, knownPages.get(UrlUtils.extractPath(url)))
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        fetched.completeExceptionally(ex);
+                    } else {
+                        fetched.complete(result);
+                    }
+                });
+    }
+
+    /**
+     * Разбирает ответ и ставит найденные ссылки в очередь.
+     *
+     * @return страница для лемматизации и записи или null, если сохранять нечего
+     */
+    private CrawledPage parse(String url, FetchResult result) {
+        if (stopped) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            return parseResult(url, result);
+        } finally {
+            metrics.getParse().recordSince(start);
+        }
+    }
+
+    private CrawledPage parseResult(String url, FetchResult result) {
+        siteCounters.addFetched(site.getId(), result.getBody() == null ? 0 : result.getBody().length);
+        if (result.getStatusCode() >= 400) {
+            siteCounters.addError(site.getId());
+        }
+        if (!acceptRedirect(url, result.getUrl())) {
+            return null;
+        }
+        String path = UrlUtils.extractPath(result.getUrl());
+        PageState known = knownPages.get(path);
+        if (known != null && result.isNotModified()) {
+            siteService.findPageContent(known.getId())
+                    .ifPresent(content -> extractLinks(Jsoup.parse(content, result.getUrl())));
+            return null;
+        }
+
+        Document parse;
+        try {
+            parse = result.isHtml() ? result.parse() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (parse != null) {
+            extractLinks(parse);
+        }
+        if (known != null && result.contentHash().equals(known.getContentHash())) {
+            siteService.touchPage(known.getId(), result);
+            return null;
+        }
+        return new CrawledPage(path, known, result, ParsedPage.of(parse));
+    }
+
+    /**
+     * Страница, на которую перенаправил адрес, сохраняется под своим путём и только один раз:
+     * если её адрес уже посещён или лежит вне сайта, ответ отбрасывается.
+     */
+    private boolean acceptRedirect(String requested, String fetched) {
+        String target = UrlUtils.normalize(fetched);
+        if (requested.equals(target)) {
+            return true;
+        }
+        return target != null && target.startsWith(rootUrl) && visited.add(target);
+    }
+
+    private CrawledPage analyze(CrawledPage page) {
+        if (page != null && !stopped && !page.parsed.text().isEmpty() && page.result.getStatusCode() == 200) {
+            page.lemmas = lemmaUtils.collectLemmaOccurrences(page.parsed.text());
+        }
+        return page;
+    }
+
+    private void persist(CrawledPage crawled) {
+        if (crawled == null || stopped) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (crawled.known != null) {
+            siteService.deletePage(site, crawled.path);
+        }
+        Page page = siteService.createPage(site, crawled.path, crawled.parsed, crawled.result);
+        siteService.updateSite(site);
+        if (crawled.lemmas != null) {
+            siteService.indexLemmas(page, site, crawled.lemmas);
+        }
+        metrics.getPersist().recordSince(start);
+    }
+
+    private void extractLinks(Document parse) {
+        for (Element element : parse.select("a[href]")) {
+            String subUrl = UrlUtils.normalize(element.absUrl("href"));
+            if (subUrl != null && subUrl.startsWith(rootUrl)) {
+                enqueue(subUrl);
+            }
+        }
+    }
+
+    private void enqueue(String url) {
+        if (stopped || visited.contains(url)) {
+            return;
+        }
+        if (visited.size() >= settings.getMaxPages()) {
+            truncated = true;
+            return;
+        }
+        if (!visited.add(url)) {
+            return;
+        }
+        pending.incrementAndGet();
+        if (!frontier.offer(url)) {
+            truncated = true;
+            visited.remove(url);
+            pending.decrementAndGet();
+            logger.warn("Frontier of {} is full, skipping {}", site.getUrl(), url);
+            return;
+        }
+        dispatch();
+    }
+
+    /**
+     * Страница, переходящая между ступенями конвейера вместе со своим содержимым.
+     */
+    private static class CrawledPage {
+        private final String path;
+        private final PageState known;
+        private final FetchResult result;
+        private final ParsedPage parsed;
+        private Map<String, Occurrences> lemmas;
+
+        CrawledPage(String path, PageState known, FetchResult result, ParsedPage parsed) {
+            this.path = path;
+            this.known = known;
+            this.result = result;
+            this.parsed = parsed;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Заголовок и сниппет результата, отправляемые потоковым поиском отдельной строкой.
+ *
+ * @see SearchResultData
+ */
+@Data
+@AllArgsConstructor
+public class SearchSnippetData {
+    /**
+     * Номер результата в списке data первой строки ответа.
+     */
+    private int index;
+    private String title;
+    private String snippet;
+}
@@ -0,0 +1,25 @@
+package searchengine.dto.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Значение одной метрики. У счётчиков и датчиков заполнено value,
+ * у таймеров — число замеров, сумма, максимум и перцентили в миллисекундах.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MetricData {
+    private String name;
+    private String type;
+    private Map<String, String> labels;
+    private Double value;
+    private Long count;
+    private Double sum;
+    private Double max;
+    private Double p50;
+    private Double p90;
+    private Double p99;
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class MetricsResponse {
+    private boolean result;
+    private List<MetricData> metrics;
+}
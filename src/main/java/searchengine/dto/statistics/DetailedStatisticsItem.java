@@ -11,4 +11,7 @@ public class DetailedStatisticsItem {
     private String error;
     private int pages;
     private int lemmas;
+    private long indexRows;
+    private long bytesFetched;
+    private long errors;
 }
@@ -0,0 +1,18 @@
+package searchengine.dto.suggest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@RequiredArgsConstructor
+@AllArgsConstructor
+public class SuggestResponse {
+    private boolean result;
+    private String error;
+    private List<SuggestionData> data;
+}
@@ -0,0 +1,15 @@
+package searchengine.dto.suggest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SuggestionData {
+    /**
+     * Запрос, в котором последнее слово заменено леммой.
+     */
+    private String text;
+    private String lemma;
+    private int frequency;
+}
@@ -0,0 +1,36 @@
+package searchengine.metrics;
+
+import org.springframework.stereotype.Component;
+import searchengine.crawler.IndexingPipeline;
+import searchengine.search.ResultCache;
+import searchengine.search.ShardedSearch;
+import searchengine.search.SnippetExecutor;
+import searchengine.search.SuggestionIndex;
+import searchengine.utility.LemmaUtils;
+
+/**
+ * Датчики состояния компонентов: глубины очередей, размеры кешей и словарей.
+ * Значения читаются у компонентов только при запросе метрик.
+ */
+@Component
+public class ComponentGauges {
+
+    public ComponentGauges(MetricsRegistry registry, IndexingPipeline pipeline, ShardedSearch shardedSearch,
+                           SnippetExecutor snippetExecutor, ResultCache resultCache, SuggestionIndex suggestionIndex,
+                           LemmaUtils lemmaUtils) {
+        for (String stage : pipeline.getQueueDepths().keySet()) {
+            registry.gauge("pipeline_queue_depth", "Pages waiting for an indexing pipeline stage",
+                    () -> pipeline.getQueueDepths().getOrDefault(stage, 0), "stage", stage);
+        }
+        registry.gauge("search_queue_depth", "Shard searches waiting for a thread", shardedSearch::getQueueDepth);
+        registry.gauge("snippet_queue_depth", "Snippets waiting for a thread", snippetExecutor::getQueueDepth);
+        registry.counter("result_cache_hits", "Search result cache hits", resultCache::getHits);
+        registry.counter("result_cache_misses", "Search result cache misses", resultCache::getMisses);
+        registry.gauge("result_cache_entries", "Search result cache entries", resultCache::size);
+        registry.gauge("result_cache_bytes", "Estimated search result cache size", resultCache::getWeight);
+        registry.gauge("suggestion_lemmas", "Lemmas in the suggestion dictionary", suggestionIndex::size);
+        registry.gauge("suggestion_memory_bytes", "Suggestion dictionary memory", suggestionIndex::getMemoryBytes);
+        registry.gauge("lemma_throughput_megabytes_per_second", "Page lemmatization throughput since startup",
+                lemmaUtils::getThroughputMbPerSecond);
+    }
+}
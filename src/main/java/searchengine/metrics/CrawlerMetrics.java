@@ -0,0 +1,41 @@
+package searchengine.metrics;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики обхода сайтов: загрузка страниц и ступени конвейера индексации.
+ */
+@Getter
+@Component
+public class CrawlerMetrics {
+    private final MetricsRegistry registry;
+    private final Timer fetch;
+    private final Counter fetchedBytes;
+    private final Counter fetchErrors;
+    private final Timer parse;
+    private final Timer persist;
+
+    public CrawlerMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.fetch = registry.timer("crawler_fetch_seconds", "Page fetch latency");
+        this.fetchedBytes = registry.counter("crawler_fetched_bytes", "Response body bytes fetched");
+        this.fetchErrors = registry.counter("crawler_fetch_errors", "Fetches failed without an HTTP response");
+        this.parse = registry.timer("crawler_stage_seconds", "Time spent in an indexing pipeline stage", "stage", "parse");
+        this.persist = registry.timer("crawler_stage_seconds", "Time spent in an indexing pipeline stage", "stage", "persist");
+    }
+
+    /**
+     * @return счётчик страниц сайта, прошедших конвейер; вызывается один раз на обход
+     */
+    public Counter pages(String site) {
+        return registry.counter("crawler_pages", "Pages processed by the indexing pipeline", "site", site);
+    }
+
+    /**
+     * @return счётчик страниц сайта, на которых конвейер завершился ошибкой
+     */
+    public Counter errors(String site) {
+        return registry.counter("crawler_errors", "Pages failed in the indexing pipeline", "site", site);
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.metrics;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики записи индекса: сохранение и удаление страниц, сброс буфера лемм.
+ */
+@Getter
+@Component
+public class IndexingMetrics {
+    private final Timer pageSave;
+    private final Timer pageDelete;
+    private final Timer flush;
+    private final Counter lemmas;
+    private final Counter indexRows;
+
+    public IndexingMetrics(MetricsRegistry registry) {
+        this.pageSave = registry.timer("indexing_page_seconds", "Page write latency", "operation", "save");
+        this.pageDelete = registry.timer("indexing_page_seconds", "Page write latency", "operation", "delete");
+        this.flush = registry.timer("indexing_flush_seconds", "Lemma and index batch flush duration");
+        this.lemmas = registry.counter("indexing_lemmas", "Page lemmas passed to the index");
+        this.indexRows = registry.counter("indexing_index_rows", "Index rows written");
+    }
+}
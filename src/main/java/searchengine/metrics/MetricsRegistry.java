@@ -0,0 +1,210 @@
+package searchengine.metrics;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.dto.metrics.MetricData;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Реестр метрик приложения. Счётчики и таймеры создаются один раз при регистрации,
+ * а вызывающий код хранит ссылки на них в полях, поэтому запись на горячих путях
+ * не обращается к реестру. Значения датчиков (gauge) вычисляются только при чтении.
+ * <p>
+ * Метрика задаётся именем и парами меток: {@code timer("search_seconds", "...", "type", "stream")}.
+ * Повторная регистрация с теми же именем и метками возвращает ту же метрику.
+ */
+@Component
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String PREFIX = "searchengine_";
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).metrics
+                .computeIfAbsent(Labels.of(labels), key -> new Counter());
+    }
+
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, Type.TIMER).metrics
+                .computeIfAbsent(Labels.of(labels), key -> new Timer());
+    }
+
+    /**
+     * Датчик, значение которого может как расти, так и уменьшаться, например глубина очереди.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(Labels.of(labels), value);
+    }
+
+    /**
+     * Счётчик, который уже ведёт сам компонент, например число попаданий в кеш.
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(Labels.of(labels), value);
+    }
+
+    @Scheduled(fixedDelayString = "${metrics-settings.window:60000}")
+    public void rotate() {
+        families.values().forEach(family -> family.metrics.values().forEach(metric -> {
+            if (metric instanceof Timer timer) {
+                timer.rotate();
+            }
+        }));
+    }
+
+    /**
+     * @return значения всех метрик; длительности в миллисекундах
+     */
+    public List<MetricData> snapshot() {
+        List<MetricData> result = new ArrayList<>();
+        families.forEach((name, family) -> family.metrics.forEach((labels, metric) -> {
+            MetricData data = new MetricData();
+            data.setName(name);
+            data.setType(family.type.name().toLowerCase(Locale.ROOT));
+            data.setLabels(labels.toMap());
+            if (metric instanceof Timer timer) {
+                long[] percentiles = timer.percentiles(QUANTILES);
+                data.setCount(timer.count());
+                data.setSum(millis(timer.sumNanos()));
+                data.setMax(millis(timer.maxNanos()));
+                data.setP50(millis(percentiles[0]));
+                data.setP90(millis(percentiles[1]));
+                data.setP99(millis(percentiles[2]));
+            } else {
+                data.setValue(value(metric));
+            }
+            result.add(data);
+        }));
+        return result;
+    }
+
+    /**
+     * Текстовый формат Prometheus 0.0.4. Таймеры выводятся как summary
+     * с квантилями скользящего окна, длительности в секундах.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        families.forEach((name, family) -> {
+            String fullName = PREFIX + (family.type == Type.COUNTER && !name.endsWith("_total") ? name + "_total" : name);
+            out.append("# HELP ").append(fullName).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(fullName).append(' ')
+                    .append(family.type == Type.TIMER ? "summary" : family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            family.metrics.forEach((labels, metric) -> {
+                if (metric instanceof Timer timer) {
+                    long[] percentiles = timer.percentiles(QUANTILES);
+                    for (int i = 0; i < QUANTILES.length; i++) {
+                        sample(out, fullName, labels.with("quantile", Double.toString(QUANTILES[i])), seconds(percentiles[i]));
+                    }
+                    sample(out, fullName + "_sum", labels, seconds(timer.sumNanos()));
+                    sample(out, fullName + "_count", labels, timer.count());
+                } else {
+                    sample(out, fullName, labels, value(metric));
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static void sample(StringBuilder out, String name, Labels labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static double value(Object metric) {
+        if (metric instanceof Counter counter) {
+            return counter.sum();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private enum Type {
+        COUNTER, GAUGE, TIMER
+    }
+
+    /**
+     * Метрики одного имени с разными метками. Значения — {@link Counter},
+     * {@link Timer} или {@link DoubleSupplier}.
+     */
+    private static class Family {
+        private final String help;
+        private final Type type;
+        private final Map<Labels, Object> metrics = new ConcurrentHashMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Пары меток в порядке объявления.
+     */
+    private record Labels(List<String> pairs) {
+        static Labels of(String... pairs) {
+            if (pairs.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name-value pairs: " + Arrays.toString(pairs));
+            }
+            return new Labels(List.of(pairs));
+        }
+
+        Labels with(String name, String value) {
+            List<String> extended = new ArrayList<>(pairs);
+            extended.add(name);
+            extended.add(value);
+            return new Labels(extended);
+        }
+
+        Map<String, String> toMap() {
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < pairs.size(); i += 2) {
+                map.put(pairs.get(i), pairs.get(i + 1));
+            }
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            if (pairs.isEmpty()) {
+                return "";
+            }
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < pairs.size(); i += 2) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(pairs.get(i)).append("=\"").append(escape(pairs.get(i + 1))).append('"');
+            }
+            return builder.append('}').toString();
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.metrics;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики поиска: задержка запросов и построения сниппетов, превышения времени ожидания.
+ */
+@Getter
+@Component
+public class SearchMetrics {
+    private final Timer search;
+    private final Timer stream;
+    private final Timer snippet;
+    private final Counter timeouts;
+
+    public SearchMetrics(MetricsRegistry registry) {
+        this.search = registry.timer("search_seconds", "Search request latency", "mode", "search");
+        this.stream = registry.timer("search_seconds", "Search request latency", "mode", "stream");
+        this.snippet = registry.timer("search_snippet_seconds", "Snippet construction latency");
+        this.timeouts = registry.counter("search_timeouts", "Searches with shards cut off by the deadline");
+    }
+}
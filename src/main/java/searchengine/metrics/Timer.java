@@ -0,0 +1,115 @@
+package searchengine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей в наносекундах с логарифмическими корзинами, как в HdrHistogram:
+ * каждая степень двойки делится на {@link #SUB_BUCKETS} равных корзин, поэтому
+ * относительная погрешность перцентилей не больше 12,5% при любом масштабе значений.
+ * Запись — одно атомарное увеличение в массиве и два {@link LongAdder}, без выделения памяти.
+ * <p>
+ * Число замеров и их сумма накапливаются с момента запуска, а перцентили
+ * считаются по скользящему окну: {@link #rotate()} раз в интервал отбрасывает
+ * старую половину окна, так что в перцентилях участвуют замеры
+ * последних одного-двух интервалов.
+ */
+public final class Timer {
+    static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        current.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * @param startNanos значение {@link System#nanoTime()} в начале замера
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Начинает новую половину окна перцентилей.
+     */
+    void rotate() {
+        previous = current;
+        current = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * @param quantiles доли от 0 до 1 в порядке возрастания
+     * @return верхние границы корзин, в которые попадают перцентили окна, в наносекундах;
+     * нули, если в окне нет замеров
+     */
+    public long[] percentiles(double... quantiles) {
+        AtomicLongArray older = previous;
+        AtomicLongArray newer = current;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = older.get(i) + (newer == older ? 0 : newer.get(i));
+            total += counts[i];
+        }
+        long[] result = new long[quantiles.length];
+        if (total == 0) {
+            return result;
+        }
+        int q = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && q < quantiles.length; i++) {
+            seen += counts[i];
+            while (q < quantiles.length && seen >= Math.ceil(quantiles[q] * total) && seen > 0) {
+                result[q++] = Math.min(upperBound(i), max.get());
+            }
+        }
+        return result;
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1L) << (exponent - SUB_BITS)) - 1;
+    }
+}
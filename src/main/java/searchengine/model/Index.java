@@ -8,18 +8,33 @@ import javax.persistence.*;
 @Entity
 @Table(name = "index_table")
 public class Index {
+    /**
+     * AUTO_INCREMENT: строки index_table вставляет {@link searchengine.services.IndexingBuffer} через JDBC без id.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "page_id", nullable = false)
     private Page page;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "lemma_id", nullable = false, foreignKey = @ForeignKey(name = "lemma_id_fk"))
     private Lemma lemma;
 
     @Column(nullable = false, name = "`rank`")
     private Double rank;
+
+    /**
+     * Позиции словоформ леммы в тексте страницы, закодированные {@link searchengine.utility.PositionCodec}.
+     */
+    @Column(columnDefinition = "BLOB")
+    private byte[] offsets;
+
+    /**
+     * Порядковые номера словоформ леммы среди слов страницы, закодированные так же.
+     */
+    @Column(columnDefinition = "BLOB")
+    private byte[] positions;
 }
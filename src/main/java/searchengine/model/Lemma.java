@@ -6,12 +6,16 @@ import javax.persistence.*;
 
 @Entity
 @Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "site_lemma_uk", columnNames = {"site_id", "lemma"}))
 public class Lemma {
+    /**
+     * AUTO_INCREMENT: строки lemma вставляет {@link searchengine.services.IndexingBuffer} через JDBC без id.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name = "site_id_fk"))
     private Site site;
 
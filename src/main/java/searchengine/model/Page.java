@@ -3,8 +3,10 @@ package searchengine.model;
 import lombok.Data;
 
 import javax.persistence.*;
-import java.util.List;
 
+/**
+ * Метаданные страницы. HTML и текст хранятся сжатыми в {@link PageContent}.
+ */
 @Entity
 @Data
 public class Page {
@@ -18,12 +20,24 @@ public class Page {
 
     private Integer code;
 
-    @Column(columnDefinition = "MEDIUMTEXT")
-    private String content;
+    @Column(columnDefinition = "VARCHAR(500)")
+    private String title;
+
+    /**
+     * Число лемматизированных слов текста страницы.
+     */
+    @Column(name = "token_count")
+    private Integer tokenCount;
 
     @Column(nullable = false, unique = true, columnDefinition = "TEXT")
     private String path;
 
-    @OneToMany(mappedBy = "page", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Index> indices;
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
 }
@@ -0,0 +1,30 @@
+package searchengine.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Содержимое страницы отдельно от её метаданных в {@link Page}: запросы по страницам
+ * не читают тела документов, а сами тела хранятся сжатыми {@link searchengine.utility.ContentCodec}.
+ */
+@Data
+@Entity
+@Table(name = "page_content")
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private Integer pageId;
+
+    /**
+     * Исходный HTML страницы.
+     */
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] content;
+
+    /**
+     * Текст страницы без разметки, по которому строятся сниппеты.
+     */
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] text;
+}
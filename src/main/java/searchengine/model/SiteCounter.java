@@ -0,0 +1,33 @@
+package searchengine.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Сохранённые значения счётчиков сайта из {@link searchengine.services.SiteCounters}.
+ * Записываются периодически, а читаются только при старте приложения.
+ */
+@Data
+@Entity
+@Table(name = "site_counter")
+public class SiteCounter {
+    @Id
+    @Column(name = "site_id")
+    private Integer siteId;
+
+    @Column(nullable = false)
+    private long pages;
+
+    @Column(nullable = false)
+    private long lemmas;
+
+    @Column(name = "index_rows", nullable = false)
+    private long indexRows;
+
+    @Column(name = "bytes_fetched", nullable = false)
+    private long bytesFetched;
+
+    @Column(nullable = false)
+    private long errors;
+}
@@ -1,18 +1,52 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Index;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
+import searchengine.repository.projection.PageOffsets;
+import searchengine.repository.projection.PagePositions;
+import searchengine.repository.projection.PageScore;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IndexRepository extends JpaRepository<Index, Integer> {
-    List<Index> findByPage(Page page);
+    /**
+     * Поиск одним запросом: страница подходит, только если на ней есть все леммы запроса.
+     * Ранги суммируются в базе, а сортировка по убыванию суммы и выбор порции результатов
+     * выполняются там же. Общее число найденных страниц возвращается в каждой строке.
+     */
+    @Query(value = "SELECT i.page_id AS pageId, SUM(i.`rank`) AS score, MAX(SUM(i.`rank`)) OVER () AS maxScore, " +
+            "COUNT(*) OVER () AS total " +
+            "FROM index_table i JOIN lemma l ON l.id = i.lemma_id " +
+            "WHERE l.site_id IN (:siteIds) AND l.lemma IN (:lemmas) AND l.frequency < :maxFrequency " +
+            "GROUP BY i.page_id HAVING COUNT(DISTINCT l.lemma) = :lemmaCount " +
+            "ORDER BY score DESC, pageId LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<PageScore> findPageScores(@Param("siteIds") Collection<Integer> siteIds,
+                                   @Param("lemmas") Collection<String> lemmas,
+                                   @Param("maxFrequency") int maxFrequency,
+                                   @Param("lemmaCount") int lemmaCount,
+                                   @Param("offset") int offset,
+                                   @Param("limit") int limit);
 
-    List<Index> findByLemma(Lemma lemma);
+    @Query(value = "SELECT lemma_id FROM index_table WHERE page_id = :pageId", nativeQuery = true)
+    List<Integer> findLemmaIdsByPageId(@Param("pageId") Integer pageId);
 
-    List<Index> findByLemmaAndPageIn(Lemma lemma, List<Page> pages);
+    @Query(value = "SELECT page_id AS pageId, offsets AS offsets FROM index_table " +
+            "WHERE page_id IN (:pageIds) AND lemma_id IN (:lemmaIds)", nativeQuery = true)
+    List<PageOffsets> findOffsets(@Param("pageIds") Collection<Integer> pageIds,
+                                  @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query(value = "SELECT page_id AS pageId, lemma_id AS lemmaId, positions AS positions FROM index_table " +
+            "WHERE page_id IN (:pageIds) AND lemma_id IN (:lemmaIds)", nativeQuery = true)
+    List<PagePositions> findPositions(@Param("pageIds") Collection<Integer> pageIds,
+                                      @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM index_table WHERE page_id = :pageId", nativeQuery = true)
+    int deleteByPageId(@Param("pageId") Integer pageId);
 }
@@ -1,23 +1,43 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
+import searchengine.repository.projection.LemmaRef;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
-    List<Lemma> findByLemmaInAndSite(List<String> lemmas, Site site);
-    List<Lemma> findBySite(Site site);
+    /**
+     * Леммы, которые есть хотя бы на одном из сайтов и не слишком часты на нём.
+     */
+    @Query("SELECT DISTINCT l.lemma FROM Lemma l " +
+            "WHERE l.site.id IN :siteIds AND l.lemma IN :lemmas AND l.frequency < :maxFrequency")
+    List<String> findPresentLemmas(@Param("siteIds") Collection<Integer> siteIds,
+                                   @Param("lemmas") Collection<String> lemmas,
+                                   @Param("maxFrequency") int maxFrequency);
 
-    List<Lemma> findBySiteInAndLemmaInAndFrequencyLessThanOrderByFrequencyAsc(List<Site> sites, List<String> lemmas, int frequency);
+    @Query("SELECT new searchengine.repository.projection.LemmaRef(l.id, l.lemma, l.frequency) FROM Lemma l " +
+            "WHERE l.site.id = :siteId AND l.lemma IN :lemmas AND l.frequency < :maxFrequency")
+    List<LemmaRef> findRefs(@Param("siteId") Integer siteId,
+                            @Param("lemmas") Collection<String> lemmas,
+                            @Param("maxFrequency") int maxFrequency);
 
     @Query("SELECT MAX(i.frequency) FROM Lemma i WHERE i.site IN :sites")
     Integer findMaxFrequencyBySiteIn(@Param("sites") List<Site> sites);
 
+    @Modifying
+    @Query(value = "UPDATE lemma l JOIN index_table i ON i.lemma_id = l.id SET l.frequency = l.frequency - 1 WHERE i.page_id = :pageId", nativeQuery = true)
+    int decrementFrequencyByPage(@Param("pageId") Integer pageId);
+
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE id IN (:ids) AND frequency <= 0", nativeQuery = true)
+    int deleteUnusedByIdIn(@Param("ids") Collection<Integer> ids);
+
 }
@@ -0,0 +1,21 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.model.PageContent;
+
+import java.util.Optional;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+
+    @Query("SELECT c.content FROM PageContent c WHERE c.pageId = :pageId")
+    Optional<byte[]> findContentByPageId(@Param("pageId") Integer pageId);
+
+    @Modifying
+    @Query("DELETE FROM PageContent c WHERE c.pageId = :pageId")
+    void deleteByPageId(@Param("pageId") Integer pageId);
+}
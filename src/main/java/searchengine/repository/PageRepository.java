@@ -1,11 +1,16 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Site;
+import searchengine.repository.projection.PageHeader;
+import searchengine.repository.projection.PageState;
+import searchengine.repository.projection.PageText;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +18,14 @@ import java.util.Optional;
 public interface PageRepository extends JpaRepository<Page, Integer> {
     boolean existsByPath(String path);
     Optional<Page> findBySiteAndPath(Site site, String path);
-    List<Page> findBySite(Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.etag AS etag, p.lastModified AS lastModified, p.contentHash AS contentHash FROM Page p WHERE p.site = :site")
+    List<PageState> findStatesBySite(@Param("site") Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path, s.url AS siteUrl, s.name AS siteName FROM Page p JOIN p.site s WHERE p.id IN :ids")
+    List<PageHeader> findHeadersByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT p.id AS id, p.title AS title, c.text AS text FROM Page p LEFT JOIN PageContent c ON c.pageId = p.id WHERE p.id IN :ids")
+    List<PageText> findTextsByIdIn(@Param("ids") Collection<Integer> ids);
 
 }
@@ -0,0 +1,9 @@
+package searchengine.repository.projection;
+
+/**
+ * Лемма сайта без ссылки на сам сайт: для поиска достаточно
+ * идентификатора, текста леммы и числа страниц, на которых она встречается.
+ * Заполняется конструкторным запросом, поэтому не отслеживается контекстом персистентности.
+ */
+public record LemmaRef(Integer id, String lemma, int frequency) {
+}
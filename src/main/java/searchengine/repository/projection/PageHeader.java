@@ -0,0 +1,15 @@
+package searchengine.repository.projection;
+
+/**
+ * Адрес найденной страницы без её текста: для списка результатов,
+ * который отправляется до построения сниппетов.
+ */
+public interface PageHeader {
+    Integer getId();
+
+    String getPath();
+
+    String getSiteUrl();
+
+    String getSiteName();
+}
@@ -0,0 +1,11 @@
+package searchengine.repository.projection;
+
+/**
+ * Позиции словоформ одной леммы на странице, закодированные
+ * {@link searchengine.utility.PositionCodec}.
+ */
+public interface PageOffsets {
+    Integer getPageId();
+
+    byte[] getOffsets();
+}
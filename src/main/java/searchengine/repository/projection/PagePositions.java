@@ -0,0 +1,13 @@
+package searchengine.repository.projection;
+
+/**
+ * Порядковые номера словоформ одной леммы на странице, закодированные
+ * {@link searchengine.utility.PositionCodec}.
+ */
+public interface PagePositions {
+    Integer getPageId();
+
+    Integer getLemmaId();
+
+    byte[] getPositions();
+}
@@ -0,0 +1,15 @@
+package searchengine.repository.projection;
+
+/**
+ * Страница, найденная агрегирующим поисковым запросом:
+ * сумма рангов лемм запроса, максимальная сумма и число всех найденных страниц.
+ */
+public interface PageScore {
+    Integer getPageId();
+
+    Double getScore();
+
+    Double getMaxScore();
+
+    Long getTotal();
+}
@@ -0,0 +1,17 @@
+package searchengine.repository.projection;
+
+/**
+ * Сведения о ранее проиндексированной странице, нужные для повторного
+ * обхода: условные заголовки запроса и хеш содержимого.
+ */
+public interface PageState {
+    Integer getId();
+
+    String getPath();
+
+    String getEtag();
+
+    String getLastModified();
+
+    String getContentHash();
+}
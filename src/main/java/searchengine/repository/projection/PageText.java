@@ -0,0 +1,15 @@
+package searchengine.repository.projection;
+
+/**
+ * Заголовок и извлечённый текст страницы для построения сниппета.
+ */
+public interface PageText {
+    Integer getId();
+
+    String getTitle();
+
+    /**
+     * @return текст, сжатый {@link searchengine.utility.ContentCodec}, или null
+     */
+    byte[] getText();
+}
@@ -0,0 +1,33 @@
+package searchengine.search;
+
+/**
+ * Okapi BM25. Редкие на сайте леммы весят больше частых, повторы леммы
+ * на странице дают убывающую прибавку, а длинные страницы штрафуются
+ * относительно средней длины страницы сайта.
+ */
+public class Bm25Scorer implements Scorer {
+    private final float k1;
+    private final float b;
+
+    public Bm25Scorer(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public TermWeight forTerm(int documentFrequency, CollectionStatistics.SiteStatistics site) {
+        long documentCount = Math.max(site.getDocumentCount(), documentFrequency);
+        float idf = (float) Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        float averageLength = (float) site.getAverageLength();
+        if (averageLength <= 0) {
+            return (frequency, documentLength) -> idf * frequency * (k1 + 1) / (frequency + k1);
+        }
+        float lengthWeight = b / averageLength;
+        float base = k1 * (1 - b);
+        float averageNorm = k1;
+        return (frequency, documentLength) -> {
+            float norm = documentLength > 0 ? base + k1 * lengthWeight * documentLength : averageNorm;
+            return idf * frequency * (k1 + 1) / (frequency + norm);
+        };
+    }
+}
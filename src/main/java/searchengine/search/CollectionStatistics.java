@@ -0,0 +1,104 @@
+package searchengine.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Статистика коллекции для формул релевантности: длина каждой страницы
+ * в лемматизированных словах, а также число страниц и их суммарная длина по сайтам.
+ * Индексатор обновляет её при записи и удалении страниц, поэтому при поиске
+ * ничего не пересчитывается. Длины хранятся в массиве по идентификатору страницы.
+ */
+@Component
+@RequiredArgsConstructor
+public class CollectionStatistics {
+    private static final String SELECT_LENGTHS = "SELECT id, site_id, token_count FROM page WHERE token_count IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, SiteStatistics> sites = new ConcurrentHashMap<>();
+    private volatile int[] lengths = new int[1024];
+
+    /**
+     * Загружает длины проиндексированных страниц из таблицы page.
+     */
+    public void load() {
+        jdbcTemplate.query(SELECT_LENGTHS, rs -> {
+            addPage(rs.getInt(2), rs.getInt(1), rs.getInt(3));
+        });
+    }
+
+    public void addPage(int siteId, int pageId, int length) {
+        if (length <= 0) {
+            return;
+        }
+        int previous = setLength(pageId, length);
+        SiteStatistics site = site(siteId);
+        if (previous == 0) {
+            site.documentCount.incrementAndGet();
+        }
+        site.totalLength.addAndGet(length - previous);
+    }
+
+    public void removePage(int siteId, int pageId) {
+        int previous = setLength(pageId, 0);
+        if (previous != 0) {
+            SiteStatistics site = site(siteId);
+            site.documentCount.decrementAndGet();
+            site.totalLength.addAndGet(-previous);
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            lengths = new int[1024];
+        }
+        sites.clear();
+    }
+
+    /**
+     * @return число лемматизированных слов страницы или 0, если страница неизвестна
+     */
+    public int length(int pageId) {
+        int[] current = lengths;
+        return pageId < current.length ? current[pageId] : 0;
+    }
+
+    public SiteStatistics site(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteStatistics());
+    }
+
+    private synchronized int setLength(int pageId, int length) {
+        int[] current = lengths;
+        if (pageId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(pageId + 1, current.length * 2));
+        }
+        int previous = current[pageId];
+        current[pageId] = length;
+        lengths = current;
+        return previous;
+    }
+
+    public static class SiteStatistics {
+        private final AtomicLong documentCount = new AtomicLong();
+        private final AtomicLong totalLength = new AtomicLong();
+
+        public long getDocumentCount() {
+            return documentCount.get();
+        }
+
+        public long getTotalLength() {
+            return totalLength.get();
+        }
+
+        public double getAverageLength() {
+            long count = documentCount.get();
+            return count == 0 ? 0 : (double) totalLength.get() / count;
+        }
+    }
+}
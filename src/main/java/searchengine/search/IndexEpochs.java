@@ -0,0 +1,45 @@
+package searchengine.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Номера версий индекса по сайтам. Индексатор увеличивает номер сайта
+ * при каждом изменении его лемм или страниц, а кеш результатов поиска
+ * сравнивает сохранённые номера с текущими и так узнаёт об устаревших записях.
+ */
+@Component
+public class IndexEpochs {
+    private final Map<Integer, AtomicLong> epochs = new ConcurrentHashMap<>();
+    private final AtomicLong global = new AtomicLong();
+
+    public void bump(int siteId) {
+        epochs.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Делает устаревшими данные всех сайтов, например перед полной переиндексацией.
+     */
+    public void bumpAll() {
+        global.incrementAndGet();
+    }
+
+    /**
+     * Текущая версия индекса для набора сайтов: сумма номеров сайтов и общего номера.
+     * Номера только растут, поэтому сумма меняется при любом изменении.
+     */
+    public long current(Collection<Integer> siteIds) {
+        long sum = global.get();
+        for (Integer siteId : siteIds) {
+            AtomicLong epoch = epochs.get(siteId);
+            if (epoch != null) {
+                sum += epoch.get();
+            }
+        }
+        return sum;
+    }
+}
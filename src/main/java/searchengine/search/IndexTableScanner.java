@@ -0,0 +1,30 @@
+package searchengine.search;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Потоковое чтение всех строк index_table при загрузке хранилищ вхождений.
+ */
+class IndexTableScanner {
+    private static final String SELECT_POSTINGS = "SELECT lemma_id, page_id, `rank` FROM index_table";
+
+    @FunctionalInterface
+    interface PostingConsumer {
+        void accept(int lemmaId, int pageId, float rank);
+    }
+
+    private IndexTableScanner() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    static void scan(DataSource dataSource, PostingConsumer consumer) {
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        // Для MySQL Connector/J это включает потоковое чтение результата без загрузки в память.
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query(SELECT_POSTINGS, rs -> {
+            consumer.accept(rs.getInt(1), rs.getInt(2), rs.getFloat(3));
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package searchengine.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обратный индекс в памяти: идентификатор леммы отображается
+ * в список вхождений {@link PostingList}. Индекс загружается из index_table
+ * после старта приложения и дальше поддерживается индексатором,
+ * поэтому поиск не обращается к базе за вхождениями.
+ * Вместе с индексом загружается {@link CollectionStatistics}.
+ * Пока загрузка не завершена, {@link #isReady()} возвращает false.
+ */
+public class InvertedIndex implements PostingStore {
+    private static final Logger logger = LoggerFactory.getLogger(InvertedIndex.class);
+
+    private final DataSource dataSource;
+    private final CollectionStatistics statistics;
+    private final Map<Integer, PostingList> postings = new ConcurrentHashMap<>();
+    private final Set<Integer> removedWhileLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading;
+    private volatile boolean ready;
+
+    public InvertedIndex(DataSource dataSource, CollectionStatistics statistics) {
+        this.dataSource = dataSource;
+        this.statistics = statistics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread thread = new Thread(this::loadPostings, "inverted-index-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loadPostings() {
+        long start = System.currentTimeMillis();
+        loading = true;
+        try {
+            statistics.load();
+            IndexTableScanner.scan(dataSource, (lemmaId, pageId, rank) -> {
+                if (!removedWhileLoading.contains(pageId)) {
+                    add(lemmaId, pageId, rank);
+                }
+            });
+            ready = true;
+            logger.info("Inverted index loaded: {} lemmas, {} postings in {} ms",
+                    postings.size(), getPostingCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Failed to load inverted index, search falls back to the database", e);
+        } finally {
+            loading = false;
+            removedWhileLoading.clear();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void add(int lemmaId, int pageId, float rank) {
+        postings.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageId, rank);
+    }
+
+    @Override
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        if (loading) {
+            removedWhileLoading.add(pageId);
+        }
+        for (Integer lemmaId : lemmaIds) {
+            PostingList list = postings.get(lemmaId);
+            if (list != null) {
+                list.remove(pageId);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+    }
+
+    @Override
+    public Postings find(int lemmaId) {
+        PostingList list = postings.get(lemmaId);
+        return list == null ? Postings.EMPTY : list.snapshot();
+    }
+
+    @Override
+    public long getPostingCount() {
+        return postings.values().stream().mapToLong(PostingList::size).sum();
+    }
+}
@@ -0,0 +1,215 @@
+package searchengine.search;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.projection.LemmaRef;
+import searchengine.repository.projection.PageScore;
+import searchengine.utility.PositionCodec;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Шард, который ищет в хранилище вхождений и базе этого же процесса.
+ * Пока {@link PostingStore} не готов, поиск выполняется запросом к базе.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocalSearchShard implements SearchShard {
+    private static final Logger logger = LoggerFactory.getLogger(LocalSearchShard.class);
+    private static final int POSITIONS_CHUNK = 1000;
+
+    private final SearchSettings searchSettings;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final PostingStore postingStore;
+    private final Scorer scorer;
+    private final CollectionStatistics collectionStatistics;
+
+    @Override
+    public ShardResult search(ShardRequest request) {
+        Set<String> candidates = request.terms().values().stream()
+                .flatMap(Set::stream)
+                .collect(Collectors.toSet());
+        Map<String, LemmaRef> found = lemmaRepository.findRefs(
+                        request.siteId(), candidates, request.maxFrequency()).stream()
+                .collect(Collectors.toMap(LemmaRef::lemma, lemma -> lemma));
+        Map<String, List<LemmaRef>> terms = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> term : request.terms().entrySet()) {
+            List<LemmaRef> lemmas = term.getValue().stream().map(found::get).filter(Objects::nonNull).toList();
+            if (lemmas.isEmpty()) {
+                return ShardResult.empty(request.siteId());
+            }
+            terms.put(term.getKey(), lemmas);
+        }
+        List<Integer> lemmaIds = found.values().stream().map(LemmaRef::id).toList();
+        return postingStore.isReady()
+                ? searchInMemory(request, terms, lemmaIds)
+                : searchInDatabase(request, terms, lemmaIds);
+    }
+
+    /**
+     * Пересекает списки вхождений термов в памяти, начиная с самых коротких.
+     * Список терма объединяет вхождения всех его лемм, а частоты лемм заменяются
+     * вкладом по формуле {@link Scorer} со статистикой сайта.
+     * Фразы проверяются только на страницах, оставшихся после пересечения.
+     * Из совпадений в куче {@link TopK} остаются лучшие страницы, а если в запросе
+     * несколько термов, лучшие search-settings.rerank-window страниц получают
+     * прибавку за близость термов друг к другу.
+     */
+    private ShardResult searchInMemory(ShardRequest request, Map<String, List<LemmaRef>> terms, List<Integer> lemmaIds) {
+        CollectionStatistics.SiteStatistics siteStatistics = collectionStatistics.site(request.siteId());
+        List<Postings> termPostings = terms.values().stream()
+                .map(lemmas -> Postings.union(lemmas.stream()
+                        .map(lemma -> postingStore.find(lemma.id())
+                                .weigh(scorer.forTerm(lemma.frequency(), siteStatistics), collectionStatistics))
+                        .toList()))
+                .sorted(Comparator.comparingInt(Postings::size))
+                .toList();
+        Postings matches = termPostings.get(0);
+        for (int i = 1; i < termPostings.size() && matches.size() > 0; i++) {
+            matches = matches.intersect(termPostings.get(i));
+        }
+        List<List<SearchQuery.PhraseTerm>> phrases = request.phrases();
+        if (!phrases.isEmpty() && matches.size() > 0) {
+            TermPositions positions = loadPositions(pageIds(matches), terms);
+            matches = matches.retain(pageId -> positions.missing().contains(pageId) || phrases.stream().allMatch(phrase ->
+                    PhraseMatcher.containsPhrase(phrase, positions.pages().getOrDefault(pageId, Map.of()))));
+        }
+
+        boolean proximity = terms.size() > 1 && searchSettings.getProximityWeight() > 0;
+        int window = proximity ? Math.max(request.window(), searchSettings.getRerankWindow()) : request.window();
+        TopK top = new TopK(Math.min(window, matches.size()));
+        float maxScore = 0;
+        for (int i = 0; i < matches.size(); i++) {
+            float score = matches.score(i);
+            maxScore = Math.max(maxScore, score);
+            top.offer(matches.pageId(i), score);
+        }
+        top.sortDescending();
+        if (proximity && top.size() > 0) {
+            top = boostProximity(top, terms);
+            maxScore = Math.max(maxScore, top.score(0));
+        }
+        int size = Math.min(top.size(), request.window());
+        int[] pageIds = new int[size];
+        float[] scores = new float[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = top.pageId(i);
+            scores[i] = top.score(i);
+        }
+        return new ShardResult(request.siteId(), pageIds, scores, matches.size(), maxScore, lemmaIds);
+    }
+
+    /**
+     * Умножает релевантность на 1 + w * (n - 1) / d, где n — число лемм запроса,
+     * d — наименьшее расстояние в словах, на котором они все встречаются на странице.
+     * Стоящие подряд леммы дают множитель 1 + w.
+     */
+    private TopK boostProximity(TopK top, Map<String, List<LemmaRef>> terms) {
+        int lemmaCount = terms.size();
+        List<Integer> pageIds = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            pageIds.add(top.pageId(i));
+        }
+        Map<Integer, Map<String, int[]>> positions = loadPositions(pageIds, terms).pages();
+        float weight = searchSettings.getProximityWeight();
+        TopK boosted = new TopK(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            float score = top.score(i);
+            Map<String, int[]> pagePositions = positions.getOrDefault(top.pageId(i), Map.of());
+            if (pagePositions.size() == lemmaCount) {
+                int span = PhraseMatcher.minimalSpan(new ArrayList<>(pagePositions.values()));
+                if (span > 0) {
+                    score *= 1 + weight * (lemmaCount - 1) / Math.max(span, lemmaCount - 1);
+                }
+            }
+            boosted.offer(top.pageId(i), score);
+        }
+        boosted.sortDescending();
+        return boosted;
+    }
+
+    /**
+     * Номера словоформ термов запроса на страницах, по {@value #POSITIONS_CHUNK} страниц за запрос.
+     * Позиции всех лемм одного терма объединяются.
+     * Строки, проиндексированные до появления позиций, ещё не заполненные {@link searchengine.services.PositionBackfill},
+     * не декодируются: их страницы попадают в missing и проверяются без учёта фраз, как в запросе к базе.
+     * Пустые позиции тоже считаются отсутствующими: строка индекса есть только у леммы,
+     * встретившейся на странице, а пустыми позиции записывала прежняя версия заполнения.
+     */
+    private TermPositions loadPositions(List<Integer> pageIds, Map<String, List<LemmaRef>> terms) {
+        Map<Integer, List<String>> termsByLemmaId = new HashMap<>();
+        terms.forEach((term, lemmas) -> lemmas.forEach(lemma ->
+                termsByLemmaId.computeIfAbsent(lemma.id(), id -> new ArrayList<>()).add(term)));
+        Map<Integer, Map<String, int[]>> positions = new HashMap<>(pageIds.size() * 2);
+        Set<Integer> missing = new HashSet<>();
+        for (int from = 0; from < pageIds.size(); from += POSITIONS_CHUNK) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + POSITIONS_CHUNK, pageIds.size()));
+            indexRepository.findPositions(chunk, termsByLemmaId.keySet()).forEach(i -> {
+                if (i.getPositions() == null || i.getPositions().length == 0) {
+                    missing.add(i.getPageId());
+                    return;
+                }
+                Map<String, int[]> pagePositions = positions.computeIfAbsent(i.getPageId(), id -> new HashMap<>());
+                int[] decoded = PositionCodec.decode(i.getPositions());
+                for (String term : termsByLemmaId.get(i.getLemmaId())) {
+                    pagePositions.merge(term, decoded, LocalSearchShard::mergeSorted);
+                }
+            });
+        }
+        if (!missing.isEmpty()) {
+            logger.warn("{} pages have no token positions yet, phrases are not checked on them", missing.size());
+        }
+        return new TermPositions(positions, missing);
+    }
+
+    /**
+     * @param missing страницы, у которых хотя бы одна лемма запроса ещё без позиций
+     */
+    private record TermPositions(Map<Integer, Map<String, int[]>> pages, Set<Integer> missing) {
+    }
+
+    private static int[] mergeSorted(int[] a, int[] b) {
+        return IntStream.concat(Arrays.stream(a), Arrays.stream(b)).sorted().distinct().toArray();
+    }
+
+    private static List<Integer> pageIds(Postings postings) {
+        List<Integer> pageIds = new ArrayList<>(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            pageIds.add(postings.pageId(i));
+        }
+        return pageIds;
+    }
+
+    /**
+     * Пересечение, суммирование рангов, сортировка и выбор лучших страниц
+     * выполняются в базе одним запросом независимо от числа лемм.
+     * Это запасной путь до загрузки индекса в память: релевантность здесь равна сумме частот,
+     * фразы в кавычках ищутся как отдельные слова, а из исправлений опечатки берётся одно.
+     */
+    private ShardResult searchInDatabase(ShardRequest request, Map<String, List<LemmaRef>> terms, List<Integer> lemmaIds) {
+        // Запрос требует каждую лемму, поэтому от терма берётся только лучшая из найденных на сайте.
+        Set<String> lemmas = terms.values().stream().map(i -> i.get(0).lemma()).collect(Collectors.toSet());
+        List<PageScore> scores = indexRepository.findPageScores(List.of(request.siteId()), lemmas,
+                request.maxFrequency(), lemmas.size(), 0, request.window());
+        if (scores.isEmpty()) {
+            return new ShardResult(request.siteId(), new int[0], new float[0], 0, 0, lemmaIds);
+        }
+        int[] pageIds = new int[scores.size()];
+        float[] values = new float[scores.size()];
+        for (int i = 0; i < scores.size(); i++) {
+            pageIds[i] = scores.get(i).getPageId();
+            values[i] = scores.get(i).getScore().floatValue();
+        }
+        PageScore first = scores.get(0);
+        return new ShardResult(request.siteId(), pageIds, values, first.getTotal().intValue(),
+                first.getMaxScore().floatValue(), lemmaIds);
+    }
+}
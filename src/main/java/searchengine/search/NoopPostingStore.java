@@ -0,0 +1,36 @@
+package searchengine.search;
+
+import java.util.Collection;
+
+/**
+ * Хранилище без списков вхождений: поиск всегда выполняется
+ * агрегирующим запросом к index_table.
+ */
+public class NoopPostingStore implements PostingStore {
+    @Override
+    public boolean isReady() {
+        return false;
+    }
+
+    @Override
+    public void add(int lemmaId, int pageId, float rank) {
+    }
+
+    @Override
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public Postings find(int lemmaId) {
+        return Postings.EMPTY;
+    }
+
+    @Override
+    public long getPostingCount() {
+        return 0;
+    }
+}
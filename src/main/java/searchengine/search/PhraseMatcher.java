@@ -0,0 +1,87 @@
+package searchengine.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Проверка фраз и близости слов по номерам словоформ на странице.
+ * Вызывается только для страниц, прошедших пересечение списков вхождений.
+ */
+public class PhraseMatcher {
+
+    private PhraseMatcher() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    /**
+     * Ищет фразу, начиная с самой редкой на странице леммы: для каждого её вхождения
+     * остальные леммы ищутся двоичным поиском на ожидаемом месте.
+     * Леммы, для которых позиции не переданы, не проверяются.
+     *
+     * @param positions возрастающие номера словоформ каждой леммы на странице
+     */
+    public static boolean containsPhrase(List<SearchQuery.PhraseTerm> phrase, Map<String, int[]> positions) {
+        SearchQuery.PhraseTerm anchor = null;
+        for (SearchQuery.PhraseTerm term : phrase) {
+            int[] termPositions = positions.get(term.lemma());
+            if (termPositions != null && (anchor == null || termPositions.length < positions.get(anchor.lemma()).length)) {
+                anchor = term;
+            }
+        }
+        if (anchor == null) {
+            return true;
+        }
+        for (int position : positions.get(anchor.lemma())) {
+            int start = position - anchor.offset();
+            if (start >= 0 && matchesAt(phrase, positions, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAt(List<SearchQuery.PhraseTerm> phrase, Map<String, int[]> positions, int start) {
+        for (SearchQuery.PhraseTerm term : phrase) {
+            int[] termPositions = positions.get(term.lemma());
+            if (termPositions != null && Arrays.binarySearch(termPositions, start + term.offset()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Наименьшее расстояние в словах, на котором встречаются все переданные леммы:
+     * окно сдвигается по слиянию списков, каждый раз продвигая самую левую позицию.
+     *
+     * @return расстояние между первым и последним словом окна или -1, если какой-то список пуст
+     */
+    public static int minimalSpan(List<int[]> positions) {
+        int count = positions.size();
+        int[] cursors = new int[count];
+        for (int[] list : positions) {
+            if (list.length == 0) {
+                return -1;
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int minList = 0;
+            for (int i = 0; i < count; i++) {
+                int value = positions.get(i)[cursors[i]];
+                if (value < min) {
+                    min = value;
+                    minList = i;
+                }
+                max = Math.max(max, value);
+            }
+            best = Math.min(best, max - min);
+            if (++cursors[minList] == positions.get(minList).length) {
+                return best;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.search;
+
+import java.util.Arrays;
+
+/**
+ * Список вхождений одной леммы: идентификаторы страниц по возрастанию
+ * и ранги леммы на этих страницах в параллельных примитивных массивах.
+ * Индексатор дописывает страницы почти всегда в конец списка,
+ * поэтому вставка обычно обходится без сдвига элементов.
+ */
+public class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] pageIds = new int[INITIAL_CAPACITY];
+    private float[] ranks = new float[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Добавляет страницу или заменяет ранг, если страница уже есть в списке.
+     */
+    public synchronized void add(int pageId, float rank) {
+        if (size == 0 || pageIds[size - 1] < pageId) {
+            ensureCapacity();
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+            return;
+        }
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position >= 0) {
+            ranks[position] = rank;
+            return;
+        }
+        int insertion = -position - 1;
+        ensureCapacity();
+        System.arraycopy(pageIds, insertion, pageIds, insertion + 1, size - insertion);
+        System.arraycopy(ranks, insertion, ranks, insertion + 1, size - insertion);
+        pageIds[insertion] = pageId;
+        ranks[insertion] = rank;
+        size++;
+    }
+
+    /**
+     * @return true, если страница была в списке
+     */
+    public synchronized boolean remove(int pageId) {
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(pageIds, position + 1, pageIds, position, size - position - 1);
+        System.arraycopy(ranks, position + 1, ranks, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Копия списка, с которой поиск работает без блокировок,
+     * пока индексатор продолжает изменять оригинал.
+     */
+    public synchronized Postings snapshot() {
+        return new Postings(Arrays.copyOf(pageIds, size), Arrays.copyOf(ranks, size), size);
+    }
+
+    private void ensureCapacity() {
+        if (size == pageIds.length) {
+            int capacity = pageIds.length + (pageIds.length >> 1) + 1;
+            pageIds = Arrays.copyOf(pageIds, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+        }
+    }
+}
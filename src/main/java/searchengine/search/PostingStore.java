@@ -0,0 +1,33 @@
+package searchengine.search;
+
+import java.util.Collection;
+
+/**
+ * Хранилище списков вхождений, из которого поиск берёт страницы лемм.
+ * Реализация выбирается параметром search-settings.posting-store:
+ * memory ({@link InvertedIndex}), segment ({@link SegmentPostingStore})
+ * или database ({@link NoopPostingStore}, поиск одним SQL-запросом).
+ * Индексатор передаёт в хранилище строки индекса после фиксации транзакции.
+ */
+public interface PostingStore {
+    /**
+     * @return false, пока хранилище загружается; в это время поиск идёт через базу
+     */
+    boolean isReady();
+
+    void add(int lemmaId, int pageId, float rank);
+
+    /**
+     * Удаляет страницу из списков перечисленных лемм.
+     */
+    void removePage(int pageId, Collection<Integer> lemmaIds);
+
+    void clear();
+
+    /**
+     * @return копия вхождений леммы, ранги равны частотам леммы на страницах
+     */
+    Postings find(int lemmaId);
+
+    long getPostingCount();
+}
@@ -0,0 +1,156 @@
+package searchengine.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый набор вхождений: страницы по возрастанию идентификатора
+ * и накопленная релевантность каждой страницы.
+ */
+public final class Postings {
+    public static final Postings EMPTY = new Postings(new int[0], new float[0], 0);
+
+    private final int[] pageIds;
+    private final float[] scores;
+    private final int size;
+
+    Postings(int[] pageIds, float[] scores, int size) {
+        this.pageIds = pageIds;
+        this.scores = scores;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageId(int i) {
+        return pageIds[i];
+    }
+
+    public float score(int i) {
+        return scores[i];
+    }
+
+    /**
+     * Заменяет частоты леммы на страницах её вкладом в релевантность.
+     */
+    public Postings weigh(Scorer.TermWeight weight, CollectionStatistics statistics) {
+        float[] weighted = new float[size];
+        for (int i = 0; i < size; i++) {
+            weighted[i] = weight.weight(scores[i], statistics.length(pageIds[i]));
+        }
+        return new Postings(pageIds, weighted, size);
+    }
+
+    /**
+     * @return набор из страниц, удовлетворяющих условию
+     */
+    public Postings retain(IntPredicate pageFilter) {
+        int[] ids = new int[size];
+        float[] kept = new float[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (pageFilter.test(pageIds[i])) {
+                ids[count] = pageIds[i];
+                kept[count++] = scores[i];
+            }
+        }
+        return new Postings(ids, kept, count);
+    }
+
+    /**
+     * Пересечение двух наборов слиянием отсортированных массивов.
+     * Если один набор много меньше другого, страницы меньшего ищутся
+     * в большем двоичным поиском с галопом.
+     * Релевантность общих страниц складывается.
+     */
+    public Postings intersect(Postings other) {
+        Postings small = size <= other.size ? this : other;
+        Postings large = small == this ? other : this;
+        int[] ids = new int[small.size];
+        float[] sums = new float[small.size];
+        int count = 0;
+        if ((long) small.size * 16 < large.size) {
+            int from = 0;
+            for (int i = 0; i < small.size && from < large.size; i++) {
+                int position = large.gallop(small.pageIds[i], from);
+                if (position >= 0) {
+                    ids[count] = small.pageIds[i];
+                    sums[count++] = small.scores[i] + large.scores[position];
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < small.size && j < large.size) {
+                int a = small.pageIds[i];
+                int b = large.pageIds[j];
+                if (a < b) {
+                    i++;
+                } else if (a > b) {
+                    j++;
+                } else {
+                    ids[count] = a;
+                    sums[count++] = small.scores[i++] + large.scores[j++];
+                }
+            }
+        }
+        return new Postings(ids, sums, count);
+    }
+
+    /**
+     * Объединение наборов с непересекающимися страницами, например списков
+     * одной леммы на разных сайтах или в разных сегментах. Если страница
+     * всё же встретилась в нескольких наборах, она остаётся в одном экземпляре.
+     */
+    public static Postings union(List<Postings> parts) {
+        if (parts.isEmpty()) {
+            return EMPTY;
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        int total = parts.stream().mapToInt(Postings::size).sum();
+        long[] packed = new long[total];
+        int count = 0;
+        for (Postings part : parts) {
+            for (int i = 0; i < part.size; i++) {
+                packed[count++] = ((long) part.pageIds[i] << 32) | (Float.floatToRawIntBits(part.scores[i]) & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(packed);
+        int[] ids = new int[total];
+        float[] sums = new float[total];
+        int size = 0;
+        for (int i = 0; i < total; i++) {
+            int pageId = (int) (packed[i] >>> 32);
+            if (size > 0 && ids[size - 1] == pageId) {
+                continue;
+            }
+            ids[size] = pageId;
+            sums[size++] = Float.intBitsToFloat((int) packed[i]);
+        }
+        return new Postings(ids, sums, size);
+    }
+
+    /**
+     * Ищет страницу начиная с позиции from, удваивая шаг, а затем двоичным поиском.
+     *
+     * @return позиция страницы или (-(точка вставки) - 1), как у {@link Arrays#binarySearch}
+     */
+    private int gallop(int pageId, int from) {
+        int step = 1;
+        int high = from;
+        while (high < size && pageIds[high] < pageId) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(pageIds, from, Math.min(high + 1, size), pageId);
+    }
+}
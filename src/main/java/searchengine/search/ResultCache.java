@@ -0,0 +1,163 @@
+package searchengine.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.index.SearchResultData;
+import searchengine.dto.index.SearchResultDto;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кеш результатов поиска с вытеснением давно не запрашивавшихся записей.
+ * Размер ограничен числом записей и оценкой занимаемой памяти.
+ * Запись хранит версию индекса {@link IndexEpochs} своих сайтов на момент
+ * начала поиска и перестаёт выдаваться, как только индекс этих сайтов изменился.
+ */
+@Component
+public class ResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int RESULT_OVERHEAD = 128;
+
+    private final SearchSettings settings;
+    private final IndexEpochs epochs;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long weight;
+    private long reportedLookups;
+
+    public ResultCache(SearchSettings settings, IndexEpochs epochs) {
+        this.settings = settings;
+        this.epochs = epochs;
+    }
+
+    /**
+     * @param lemmas  отсортированные леммы запроса
+     * @param phrases фразы запроса в кавычках
+     * @param site    адрес сайта из запроса или null для поиска по всем сайтам
+     * @param fuzzy   включено ли исправление опечаток
+     */
+    public record Key(List<String> lemmas, List<List<SearchQuery.PhraseTerm>> phrases, String site, int offset, int limit,
+                      boolean fuzzy) {
+    }
+
+    /**
+     * @return сохранённый результат или null, если его нет или индекс сайтов изменился
+     */
+    public SearchResultDto get(Key key, List<Integer> siteIds) {
+        if (!settings.isResultCache()) {
+            return null;
+        }
+        long epoch = epochs.current(siteIds);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.epoch == epoch) {
+                hits.increment();
+                return entry.result;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param epoch версия индекса, прочитанная через {@link IndexEpochs#current} до начала поиска
+     */
+    public void put(Key key, long epoch, SearchResultDto result) {
+        if (!settings.isResultCache() || !result.isResult()) {
+            return;
+        }
+        long entryWeight = weigh(key, result);
+        if (entryWeight > settings.getResultCacheMaxBytes() / 4) {
+            return;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(result, epoch, entryWeight));
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > settings.getResultCacheMaxEntries() || weight > settings.getResultCacheMaxBytes())
+                    && iterator.hasNext()) {
+                weight -= iterator.next().getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return оценка памяти, занимаемой записями, в байтах
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Scheduled(fixedDelayString = "${search-settings.cache-report-interval:60000}")
+    public void reportStatistics() {
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        if (lookups == reportedLookups) {
+            return;
+        }
+        reportedLookups = lookups;
+        logger.info("Search result cache: {} entries, {} KB, hit ratio {}% ({} hits, {} misses)",
+                size(), getWeight() / 1024, String.format("%.1f", hitCount * 100.0 / lookups), hitCount, lookups - hitCount);
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    private static long weigh(Key key, SearchResultDto result) {
+        long size = ENTRY_OVERHEAD;
+        for (String lemma : key.lemmas()) {
+            size += 48 + lemma.length() * 2L;
+        }
+        if (result.getData() != null) {
+            for (SearchResultData data : result.getData()) {
+                size += RESULT_OVERHEAD + 2L * (length(data.getSite()) + length(data.getSiteName())
+                        + length(data.getUri()) + length(data.getTitle()) + length(data.getSnippet()));
+            }
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private record Entry(SearchResultDto result, long epoch, long weight) {
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.search;
+
+/**
+ * Формула релевантности. Вклад каждой леммы запроса в релевантность страницы
+ * вычисляется по частоте леммы на странице и длине страницы, а статистика
+ * сайта передаётся один раз на лемму, поэтому внутренний цикл обходится
+ * примитивными значениями.
+ */
+public interface Scorer {
+    /**
+     * @param documentFrequency число страниц сайта, содержащих лемму
+     * @param site              статистика сайта, которой принадлежит лемма
+     * @return вклад леммы для отдельной страницы
+     */
+    TermWeight forTerm(int documentFrequency, CollectionStatistics.SiteStatistics site);
+
+    @FunctionalInterface
+    interface TermWeight {
+        /**
+         * @param frequency      число словоформ леммы на странице
+         * @param documentLength число лемматизированных слов страницы или 0, если оно неизвестно
+         */
+        float weight(float frequency, int documentLength);
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.search;
+
+import java.util.List;
+
+/**
+ * Порция результатов поиска после слияния ответов шардов.
+ *
+ * @param hits     страницы запрошенной порции по убыванию релевантности
+ * @param total    общее число найденных страниц
+ * @param lemmaIds идентификаторы лемм запроса на всех сайтах, нужны для сниппетов
+ * @param complete false, если часть шардов не ответила до истечения срока запроса
+ */
+public record SearchHits(List<Hit> hits, int total, List<Integer> lemmaIds, boolean complete) {
+
+    /**
+     * @param relevance релевантность, делённая на наибольшую среди всех найденных страниц
+     */
+    public record Hit(int pageId, double relevance) {
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.search;
+
+import searchengine.utility.LemmaUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Разобранный поисковый запрос: все леммы запроса и фразы, заключённые в кавычки.
+ * Фраза хранит леммы вместе с их смещением от первого слова фразы,
+ * служебные слова внутри фразы не проверяются, но сохраняют расстояние между словами.
+ *
+ * @param lemmas  леммы всех слов запроса, как их возвращает {@link LemmaUtils#getLemmaSet(String)}
+ * @param phrases фразы запроса
+ */
+public record SearchQuery(Set<String> lemmas, List<List<PhraseTerm>> phrases) {
+
+    public record PhraseTerm(String lemma, int offset) {
+    }
+
+    public static SearchQuery parse(String query, LemmaUtils lemmaUtils) {
+        List<List<PhraseTerm>> phrases = new ArrayList<>();
+        int open = query.indexOf('"');
+        while (open >= 0) {
+            int close = query.indexOf('"', open + 1);
+            if (close < 0) {
+                break;
+            }
+            List<PhraseTerm> phrase = phrase(lemmaUtils.lemmaSequence(query.substring(open + 1, close)));
+            if (phrase.size() > 1) {
+                phrases.add(phrase);
+            }
+            open = query.indexOf('"', close + 1);
+        }
+        return new SearchQuery(lemmaUtils.getLemmaSet(query), phrases);
+    }
+
+    private static List<PhraseTerm> phrase(List<String> sequence) {
+        List<PhraseTerm> terms = new ArrayList<>();
+        int first = -1;
+        for (int i = 0; i < sequence.size(); i++) {
+            String lemma = sequence.get(i);
+            if (lemma == null) {
+                continue;
+            }
+            if (first < 0) {
+                first = i;
+            }
+            terms.add(new PhraseTerm(lemma, i - first));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,11 @@
+package searchengine.search;
+
+/**
+ * Часть индекса, отвечающая за страницы одного сайта. Шард сам отбирает
+ * лучшие страницы, а {@link ShardedSearch} сливает их ответы. Запрос и ответ
+ * состоят из простых значений, поэтому шард может находиться и в другом процессе.
+ */
+public interface SearchShard {
+
+    ShardResult search(ShardRequest request);
+}
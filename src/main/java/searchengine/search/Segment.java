@@ -0,0 +1,179 @@
+package searchengine.search;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый файл сегмента с вхождениями лемм, читаемый через {@link FileChannel#map}.
+ * <pre>
+ * заголовок:  magic, version, число лемм (int), число вхождений (long)
+ * словарь:    по возрастанию идентификатора леммы записи фиксированной длины
+ *             (идентификатор леммы int, смещение списка long, число страниц int)
+ * данные:     для каждой леммы пары varint (разность с предыдущей страницей, частота)
+ * </pre>
+ * Словарь ищется двоичным поиском прямо в отображённом буфере,
+ * поэтому открытие сегмента не читает файл в память.
+ */
+final class Segment {
+    private static final int MAGIC = 0x53454731;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 16;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int termCount;
+    private final long postingCount;
+
+    private Segment(Path path, MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        this.path = path;
+        this.buffer = buffer;
+        this.termCount = buffer.getInt(8);
+        this.postingCount = buffer.getLong(12);
+    }
+
+    static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment is too large to map: " + path);
+            }
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Записывает сегмент и открывает его.
+     *
+     * @param lemmaIds возрастающие идентификаторы лемм
+     * @param postings вхождения леммы по её идентификатору
+     */
+    static Segment write(Path path, int[] lemmaIds, IntFunction<Postings> postings) throws IOException {
+        ByteBuffer dictionary = ByteBuffer.allocate(HEADER_SIZE + lemmaIds.length * ENTRY_SIZE);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long offset = dictionary.capacity();
+            channel.position(offset);
+            OutputStream data = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            dictionary.position(HEADER_SIZE);
+            for (int lemmaId : lemmaIds) {
+                Postings list = postings.apply(lemmaId);
+                dictionary.putInt(lemmaId).putLong(offset).putInt(list.size());
+                int previous = 0;
+                for (int i = 0; i < list.size(); i++) {
+                    offset += writeVarint(data, list.pageId(i) - previous);
+                    offset += writeVarint(data, Math.round(list.score(i)));
+                    previous = list.pageId(i);
+                }
+                total += list.size();
+            }
+            data.flush();
+            dictionary.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, lemmaIds.length).putLong(12, total);
+            dictionary.position(0);
+            channel.write(dictionary, 0);
+            channel.force(true);
+        }
+        return open(path);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    long getPostingCount() {
+        return postingCount;
+    }
+
+    long getSize() {
+        return buffer.capacity();
+    }
+
+    int lemmaIdAt(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ENTRY_SIZE);
+    }
+
+    /**
+     * @param deleted удалённые страницы, которые пропускаются при чтении
+     * @return вхождения леммы или {@link Postings#EMPTY}, если леммы нет в сегменте
+     */
+    Postings read(int lemmaId, IntPredicate deleted) {
+        int index = find(lemmaId);
+        if (index < 0) {
+            return Postings.EMPTY;
+        }
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        int position = (int) buffer.getLong(entry + 4);
+        int count = buffer.getInt(entry + 12);
+        int[] pageIds = new int[count];
+        float[] ranks = new float[count];
+        int size = 0;
+        int pageId = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            pageId += value;
+            int rank = 0;
+            shift = 0;
+            do {
+                b = buffer.get(position++);
+                rank |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (!deleted.test(pageId)) {
+                pageIds[size] = pageId;
+                ranks[size++] = rank;
+            }
+        }
+        return new Postings(pageIds, ranks, size);
+    }
+
+    private int find(int lemmaId) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = lemmaIdAt(middle);
+            if (value < lemmaId) {
+                low = middle + 1;
+            } else if (value > lemmaId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int writeVarint(OutputStream out, int value) throws IOException {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            bytes++;
+        }
+        out.write(value);
+        return bytes;
+    }
+}
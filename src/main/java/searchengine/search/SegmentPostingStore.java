@@ -0,0 +1,544 @@
+package searchengine.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Хранилище вхождений в неизменяемых файлах {@link Segment}.
+ * Новые вхождения копятся в памяти и записываются отдельным сегментом,
+ * когда их набирается search-settings.segment-flush-postings или истекает
+ * search-settings.segment-flush-interval. Фоновое слияние объединяет самые мелкие
+ * сегменты, как только их становится больше search-settings.segment-merge-factor.
+ * Удалённые страницы отмечаются в файле tombstones и пропускаются при чтении,
+ * а из сегментов исчезают при слиянии. Отметка хранит номер последнего сегмента
+ * на момент удаления и стирается, когда все сегменты с номерами не больше него
+ * слиты в новые.
+ * <p>
+ * Список живых сегментов хранится в файле manifest. Файл clean создаётся
+ * при штатной остановке; если его нет, несохранённые вхождения могли потеряться,
+ * и хранилище заново строится из index_table.
+ */
+public class SegmentPostingStore implements PostingStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentPostingStore.class);
+    private static final String MANIFEST = "segments.manifest";
+    private static final String TOMBSTONES = "tombstones.bin";
+    private static final String CLEAN = "clean";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final DataSource dataSource;
+    private final CollectionStatistics statistics;
+    private final Path directory;
+    private final long flushPostings;
+    private final long flushInterval;
+    private final int mergeFactor;
+    private final long maxSegmentBytes;
+    private final ReadWriteLock memtableLock = new ReentrantReadWriteLock();
+    private final Object maintenanceLock = new Object();
+    private final Object tombstoneLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong generation = new AtomicLong();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "segment-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile State state = new State(List.of(), new Memtable(), null);
+    private volatile Tombstones tombstones = new Tombstones();
+    private volatile boolean ready;
+
+    public SegmentPostingStore(DataSource dataSource, CollectionStatistics statistics, Path directory,
+                               long flushPostings, long flushInterval, int mergeFactor, long maxSegmentBytes) {
+        this.dataSource = dataSource;
+        this.statistics = statistics;
+        this.directory = directory;
+        this.flushPostings = flushPostings;
+        this.flushInterval = flushInterval;
+        this.mergeFactor = Math.max(mergeFactor, 2);
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        maintenance.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                statistics.load();
+                boolean clean = Files.deleteIfExists(directory.resolve(CLEAN));
+                if (clean && Files.exists(directory.resolve(MANIFEST))) {
+                    open();
+                } else {
+                    rebuild();
+                }
+                ready = true;
+                State current = state;
+                logger.info("Segment store loaded: {} segments, {} postings, {} KB on disk in {} ms",
+                        current.segments().size(), getPostingCount(),
+                        current.segments().stream().mapToLong(Segment::getSize).sum() / 1024,
+                        System.currentTimeMillis() - start);
+                maintenance.scheduleWithFixedDelay(this::maintain, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to load segment store, search falls back to the database", e);
+            }
+        });
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void add(int lemmaId, int pageId, float rank) {
+        long size;
+        memtableLock.readLock().lock();
+        try {
+            size = state.active().add(lemmaId, pageId, rank);
+        } finally {
+            memtableLock.readLock().unlock();
+        }
+        if (size >= flushPostings && ready && flushRequested.compareAndSet(false, true)) {
+            maintenance.execute(this::maintain);
+        }
+    }
+
+    /**
+     * Сначала страница убирается из памяти, затем отмечается удалённой, и только потом
+     * читается номер последнего сегмента. Поэтому сегмент с большим номером уже не может
+     * содержать страницу: его вхождения прочитаны после удаления из памяти и с проверкой отметки.
+     */
+    @Override
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        State current = state;
+        current.active().remove(pageId, lemmaIds);
+        if (current.flushing() != null) {
+            current.flushing().remove(pageId, lemmaIds);
+        }
+        synchronized (tombstoneLock) {
+            tombstones.add(pageId, generation::get, directory.resolve(TOMBSTONES));
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (maintenanceLock) {
+            List<Segment> segments;
+            memtableLock.writeLock().lock();
+            try {
+                segments = state.segments();
+                state = new State(List.of(), new Memtable(), null);
+                synchronized (tombstoneLock) {
+                    tombstones = new Tombstones();
+                }
+            } finally {
+                memtableLock.writeLock().unlock();
+            }
+            try {
+                writeManifest(List.of());
+                Files.deleteIfExists(directory.resolve(TOMBSTONES));
+                segments.forEach(this::delete);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public Postings find(int lemmaId) {
+        State current = state;
+        Tombstones deleted = tombstones;
+        List<Postings> parts = new ArrayList<>(current.segments().size() + 2);
+        for (Segment segment : current.segments()) {
+            Postings postings = segment.read(lemmaId, deleted::contains);
+            if (postings.size() > 0) {
+                parts.add(postings);
+            }
+        }
+        if (current.flushing() != null) {
+            parts.add(current.flushing().find(lemmaId));
+        }
+        parts.add(current.active().find(lemmaId));
+        return Postings.union(parts);
+    }
+
+    @Override
+    public long getPostingCount() {
+        State current = state;
+        long count = current.segments().stream().mapToLong(Segment::getPostingCount).sum() + current.active().size();
+        return current.flushing() == null ? count : count + current.flushing().size();
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        maintenance.shutdown();
+        maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        if (ready) {
+            flush();
+            Files.write(directory.resolve(CLEAN), new byte[0]);
+        }
+    }
+
+    private void maintain() {
+        flushRequested.set(false);
+        try {
+            flush();
+            merge();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Segment maintenance failed", e);
+        }
+    }
+
+    /**
+     * Записывает накопленные в памяти вхождения новым сегментом. До замены
+     * состояния поиск читает их из памяти, после — из файла.
+     */
+    private void flush() throws IOException {
+        synchronized (maintenanceLock) {
+            Memtable full;
+            memtableLock.writeLock().lock();
+            try {
+                State current = state;
+                if (current.active().size() == 0) {
+                    return;
+                }
+                full = current.active();
+                state = new State(current.segments(), new Memtable(), full);
+            } finally {
+                memtableLock.writeLock().unlock();
+            }
+            Segment segment;
+            try {
+                segment = Segment.write(nextSegmentPath(), full.lemmaIds(), full::find);
+            } catch (IOException | RuntimeException e) {
+                memtableLock.writeLock().lock();
+                try {
+                    full.drainInto(state.active());
+                    state = new State(state.segments(), state.active(), null);
+                } finally {
+                    memtableLock.writeLock().unlock();
+                }
+                throw e;
+            }
+            List<Segment> segments = new ArrayList<>(state.segments());
+            segments.add(segment);
+            replaceSegments(segments, false);
+            logger.debug("Flushed segment {} with {} postings", segment.getPath().getFileName(), segment.getPostingCount());
+        }
+    }
+
+    /**
+     * Сливает самые мелкие сегменты, пока их больше допустимого,
+     * не превышая search-settings.segment-max-bytes на итоговый файл.
+     */
+    private void merge() throws IOException {
+        synchronized (maintenanceLock) {
+            boolean merged = false;
+            while (state.segments().size() > mergeFactor) {
+                List<Segment> candidates = new ArrayList<>(state.segments());
+                candidates.sort(Comparator.comparingLong(Segment::getSize));
+                List<Segment> merging = new ArrayList<>();
+                long size = 0;
+                for (Segment segment : candidates) {
+                    if (merging.size() == mergeFactor || size + segment.getSize() > maxSegmentBytes) {
+                        break;
+                    }
+                    merging.add(segment);
+                    size += segment.getSize();
+                }
+                if (merging.size() < 2) {
+                    return;
+                }
+                Tombstones deleted = tombstones;
+                int[] lemmaIds = merging.stream()
+                        .flatMapToInt(segment -> IntStream.range(0, segment.getTermCount()).map(segment::lemmaIdAt))
+                        .sorted().distinct().toArray();
+                Segment result = Segment.write(nextSegmentPath(), lemmaIds, lemmaId -> Postings.union(
+                        merging.stream().map(segment -> segment.read(lemmaId, deleted::contains)).toList()));
+                List<Segment> segments = new ArrayList<>(state.segments());
+                segments.removeAll(merging);
+                segments.add(result);
+                replaceSegments(segments, true);
+                merging.forEach(this::delete);
+                merged = true;
+                logger.info("Merged {} segments into {} ({} postings, {} KB)", merging.size(),
+                        result.getPath().getFileName(), result.getPostingCount(), result.getSize() / 1024);
+            }
+            if (merged) {
+                compactTombstones();
+            }
+        }
+    }
+
+    /**
+     * Стирает отметки страниц, которых уже не может быть ни в одном живом сегменте:
+     * все сегменты, существовавшие на момент удаления, слиты с пропуском удалённых страниц.
+     * Файл tombstones перезаписывается целиком через временный файл.
+     */
+    private void compactTombstones() throws IOException {
+        long oldest = state.segments().stream()
+                .mapToLong(segment -> segmentNumber(segment.getPath()))
+                .min().orElse(Long.MAX_VALUE);
+        synchronized (tombstoneLock) {
+            Tombstones current = tombstones;
+            Tombstones kept = current.retainSince(oldest);
+            if (kept.size() == current.size()) {
+                return;
+            }
+            Path temporary = directory.resolve(TOMBSTONES + ".tmp");
+            kept.write(temporary);
+            Files.move(temporary, directory.resolve(TOMBSTONES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tombstones = kept;
+            logger.debug("Compacted tombstones: {} of {} kept", kept.size(), current.size());
+        }
+    }
+
+    private void replaceSegments(List<Segment> segments, boolean keepFlushing) throws IOException {
+        memtableLock.writeLock().lock();
+        try {
+            State current = state;
+            state = new State(List.copyOf(segments), current.active(), keepFlushing ? current.flushing() : null);
+        } finally {
+            memtableLock.writeLock().unlock();
+        }
+        writeManifest(segments);
+    }
+
+    private void open() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        Set<Path> live = new HashSet<>();
+        for (String name : Files.readAllLines(directory.resolve(MANIFEST))) {
+            if (!name.isBlank()) {
+                Path path = directory.resolve(name.trim());
+                segments.add(Segment.open(path));
+                live.add(path);
+            }
+        }
+        tombstones = Tombstones.load(directory.resolve(TOMBSTONES));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                generation.accumulateAndGet(segmentNumber(file), Math::max);
+                if (!live.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        state = new State(List.copyOf(segments), state.active(), null);
+    }
+
+    private void rebuild() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        IndexTableScanner.scan(dataSource, (lemmaId, pageId, rank) -> {
+            add(lemmaId, pageId, rank);
+            if (state.active().size() >= flushPostings) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        flush();
+        merge();
+    }
+
+    private void writeManifest(List<Segment> segments) throws IOException {
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temporary, segments.stream().map(segment -> segment.getPath().getFileName().toString()).toList());
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path nextSegmentPath() {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, generation.incrementAndGet(), SEGMENT_SUFFIX));
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Файл удаляется сразу: на Linux отображённый в память сегмент остаётся
+     * доступен запросам, которые ещё читают его, до сборки буфера.
+     */
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to delete segment {} | {}", segment.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param flushing вхождения, которые сейчас записываются в сегмент
+     */
+    private record State(List<Segment> segments, Memtable active, Memtable flushing) {
+    }
+
+    /**
+     * Вхождения, ещё не записанные в сегмент.
+     */
+    private static final class Memtable {
+        private final Map<Integer, PostingList> postings = new ConcurrentHashMap<>();
+        private final AtomicLong size = new AtomicLong();
+
+        long add(int lemmaId, int pageId, float rank) {
+            postings.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageId, rank);
+            return size.incrementAndGet();
+        }
+
+        void remove(int pageId, Collection<Integer> lemmaIds) {
+            for (Integer lemmaId : lemmaIds) {
+                PostingList list = postings.get(lemmaId);
+                if (list != null) {
+                    list.remove(pageId);
+                }
+            }
+        }
+
+        Postings find(int lemmaId) {
+            PostingList list = postings.get(lemmaId);
+            return list == null ? Postings.EMPTY : list.snapshot();
+        }
+
+        void drainInto(Memtable target) {
+            postings.forEach((lemmaId, list) -> {
+                Postings snapshot = list.snapshot();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    target.add(lemmaId, snapshot.pageId(i), snapshot.score(i));
+                }
+            });
+        }
+
+        int[] lemmaIds() {
+            return postings.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        long size() {
+            return size.get();
+        }
+    }
+
+    /**
+     * Множество удалённых страниц в виде битовой карты по идентификатору страницы.
+     * Читается без блокировок; массив пересоздаётся только при росте.
+     * Для каждой страницы запоминается номер последнего сегмента на момент удаления;
+     * в файле записи хранятся парами (страница, номер).
+     */
+    private static final class Tombstones {
+        private volatile AtomicLongArray words = new AtomicLongArray(64);
+        private final Map<Integer, Long> generations = new ConcurrentHashMap<>();
+
+        static Tombstones load(Path file) throws IOException {
+            Tombstones tombstones = new Tombstones();
+            if (Files.exists(file)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    while (in.available() >= Integer.BYTES + Long.BYTES) {
+                        tombstones.put(in.readInt(), in.readLong());
+                    }
+                }
+            }
+            return tombstones;
+        }
+
+        boolean contains(int pageId) {
+            AtomicLongArray current = words;
+            int index = pageId >>> 6;
+            return index < current.length() && (current.get(index) & (1L << pageId)) != 0;
+        }
+
+        int size() {
+            return generations.size();
+        }
+
+        /**
+         * Отмечает страницу до чтения номера сегмента, чтобы слияние, получившее
+         * больший номер, уже пропускало её.
+         */
+        synchronized void add(int pageId, LongSupplier generation, Path file) {
+            set(pageId);
+            long current = generation.getAsLong();
+            generations.put(pageId, current);
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                out.writeInt(pageId);
+                out.writeLong(current);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return отметки, которые ещё могут скрывать страницы в сегментах с номером от oldest
+         */
+        Tombstones retainSince(long oldest) {
+            Tombstones kept = new Tombstones();
+            generations.forEach((pageId, generation) -> {
+                if (generation >= oldest) {
+                    kept.put(pageId, generation);
+                }
+            });
+            return kept;
+        }
+
+        void write(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                for (Map.Entry<Integer, Long> entry : generations.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+        }
+
+        private void put(int pageId, long generation) {
+            set(pageId);
+            generations.put(pageId, generation);
+        }
+
+        private synchronized void set(int pageId) {
+            int index = pageId >>> 6;
+            AtomicLongArray current = words;
+            if (index >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            long bit = 1L << pageId;
+            current.getAndAccumulate(index, bit, (value, mask) -> value | mask);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @param terms        леммы запроса, которые должны встретиться на странице; каждой
+ *                     сопоставлены леммы, любая из которых засчитывается вместо неё
+ *                     (сама лемма или исправления опечатки), лучшая первой
+ * @param maxFrequency леммы с частотой не меньше этой в поиске не участвуют
+ * @param window       сколько лучших страниц вернуть
+ */
+public record ShardRequest(int siteId, Map<String, Set<String>> terms, List<List<SearchQuery.PhraseTerm>> phrases,
+                           int maxFrequency, int window) {
+}
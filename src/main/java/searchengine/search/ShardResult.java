@@ -0,0 +1,22 @@
+package searchengine.search;
+
+import java.util.List;
+
+/**
+ * Ответ шарда: лучшие страницы сайта по убыванию релевантности.
+ * Релевантность не нормирована, чтобы ответы разных шардов можно было сравнивать.
+ *
+ * @param total    число всех найденных на сайте страниц
+ * @param maxScore наибольшая релевантность среди всех найденных страниц
+ * @param lemmaIds идентификаторы лемм запроса на сайте
+ */
+public record ShardResult(int siteId, int[] pageIds, float[] scores, int total, float maxScore, List<Integer> lemmaIds) {
+
+    public static ShardResult empty(int siteId) {
+        return new ShardResult(siteId, new int[0], new float[0], 0, 0, List.of());
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+}
@@ -0,0 +1,120 @@
+package searchengine.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поиск по нескольким сайтам по схеме scatter-gather: запрос параллельно
+ * отправляется шардам сайтов, каждый возвращает свои лучшие страницы,
+ * а здесь они сливаются в общую порцию результатов.
+ * <p>
+ * Шарды выполняются в отдельном пуле из search-settings.search-threads потоков
+ * с очередью на search-settings.search-queue-capacity задач. Весь запрос
+ * ограничен сроком search-settings.search-timeout: шарды, не успевшие ответить,
+ * прерываются, а результат собирается из остальных и помечается неполным.
+ */
+@Component
+public class ShardedSearch {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSearch.class);
+
+    private final SearchShard shard;
+    private final long timeout;
+    private final ThreadPoolExecutor pool;
+
+    public ShardedSearch(SearchShard shard, SearchSettings settings) {
+        this.shard = shard;
+        this.timeout = settings.getSearchTimeout();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(settings.getSearchThreads(), settings.getSearchThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getSearchQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "search-shard-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param terms леммы, которые должны встретиться на странице, с допустимыми заменами
+     * @see ShardRequest#terms()
+     */
+    public SearchHits search(List<Integer> siteIds, Map<String, Set<String>> terms, List<List<SearchQuery.PhraseTerm>> phrases,
+                             int maxFrequency, int offset, int limit) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int window = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        Map<Integer, Future<ShardResult>> futures = new LinkedHashMap<>();
+        boolean complete = true;
+        for (Integer siteId : siteIds) {
+            ShardRequest request = new ShardRequest(siteId, terms, phrases, maxFrequency, window);
+            try {
+                futures.put(siteId, pool.submit(() -> shard.search(request)));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Search queue is full, site {} skipped", siteId);
+                complete = false;
+            }
+        }
+
+        List<ShardResult> results = new ArrayList<>(futures.size());
+        for (Map.Entry<Integer, Future<ShardResult>> entry : futures.entrySet()) {
+            try {
+                results.add(entry.getValue().get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                logger.warn("Site {} did not answer within {} ms", entry.getKey(), timeout);
+                complete = false;
+            } catch (ExecutionException e) {
+                logger.error("Search failed on site {} | {}", entry.getKey(), e.getCause().getMessage());
+                complete = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                return merge(results, offset, limit, false);
+            }
+        }
+        return merge(results, offset, limit, complete);
+    }
+
+    /**
+     * Выбирает общую порцию из лучших страниц шардов. Релевантность делится
+     * на наибольшую по всем шардам, как если бы поиск шёл по одному индексу.
+     */
+    private static SearchHits merge(List<ShardResult> results, int offset, int limit, boolean complete) {
+        long total = 0;
+        float maxScore = 0;
+        int candidates = 0;
+        List<Integer> lemmaIds = new ArrayList<>();
+        for (ShardResult result : results) {
+            total += result.total();
+            maxScore = Math.max(maxScore, result.maxScore());
+            candidates += result.size();
+            lemmaIds.addAll(result.lemmaIds());
+        }
+        TopK top = new TopK((int) Math.min((long) offset + limit, candidates));
+        for (ShardResult result : results) {
+            for (int i = 0; i < result.size(); i++) {
+                top.offer(result.pageIds()[i], result.scores()[i]);
+            }
+        }
+        top.sortDescending();
+        List<SearchHits.Hit> hits = new ArrayList<>(Math.max(Math.min(top.size() - offset, limit), 0));
+        for (int i = offset; i < top.size() && hits.size() < limit; i++) {
+            hits.add(new SearchHits.Hit(top.pageId(i), top.score(i) / maxScore));
+        }
+        return new SearchHits(hits, (int) Math.min(total, Integer.MAX_VALUE), lemmaIds, complete);
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,110 @@
+package searchengine.search;
+
+import searchengine.utility.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Строит сниппет по сохранённому тексту страницы и позициям словоформ лемм запроса.
+ * Текст не разбирается и не лемматизируется повторно: фрагменты вырезаются
+ * вокруг первых вхождений лемм, а словоформы выделяются по их позициям.
+ */
+public class SnippetBuilder {
+    public static final String NOT_FOUND = "NOT FOUND";
+    private static final String SEPARATOR = "...";
+
+    private SnippetBuilder() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    /**
+     * @param text      текст страницы
+     * @param offsets   возрастающие позиции словоформ для каждой леммы запроса, найденной на странице
+     * @param maxLength примерная длина сниппета; делится поровну между леммами
+     */
+    public static String build(String text, List<int[]> offsets, int maxLength) {
+        List<int[]> found = offsets.stream().filter(i -> i.length > 0).toList();
+        if (text == null || found.isEmpty()) return NOT_FOUND;
+
+        int half = maxLength / found.size() / 2;
+        List<int[]> fragments = new ArrayList<>();
+        for (int[] positions : found) {
+            int position = firstUncovered(positions, fragments);
+            if (position >= 0) {
+                fragments.add(new int[]{fragmentStart(text, position, half), fragmentEnd(text, position, half)});
+            }
+        }
+        fragments.sort(Comparator.comparingInt(i -> i[0]));
+
+        int[] highlighted = found.stream().flatMapToInt(Arrays::stream).sorted().toArray();
+        StringBuilder snippet = new StringBuilder(maxLength + 64);
+        int previousEnd = -1;
+        for (int[] fragment : fragments) {
+            int start = Math.max(fragment[0], previousEnd);
+            if (start >= fragment[1]) continue;
+            if (start != previousEnd && !snippet.isEmpty()) snippet.append(SEPARATOR);
+            highlight(snippet, text, start, fragment[1], highlighted);
+            previousEnd = fragment[1];
+        }
+        return snippet.toString();
+    }
+
+    private static int firstUncovered(int[] positions, List<int[]> fragments) {
+        for (int position : positions) {
+            boolean covered = false;
+            for (int[] fragment : fragments) {
+                if (fragment[0] <= position && position < fragment[1]) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) return position;
+        }
+        return -1;
+    }
+
+    /**
+     * Начало фрагмента: не раньше начала предложения и не посреди слова.
+     */
+    private static int fragmentStart(String text, int position, int half) {
+        int sentence = text.lastIndexOf('.', position - 1) + 1;
+        int start = Math.max(sentence, position - half);
+        if (start > sentence) {
+            while (start < position && !Character.isWhitespace(text.charAt(start - 1))) start++;
+        }
+        while (start < position && Character.isWhitespace(text.charAt(start))) start++;
+        return start;
+    }
+
+    /**
+     * Конец фрагмента: не дальше конца предложения и не посреди слова.
+     */
+    private static int fragmentEnd(String text, int position, int half) {
+        int wordEnd = Tokenizer.wordEnd(text, position);
+        int limit = Math.min(text.length(), Math.max(wordEnd, position + half));
+        int sentence = text.indexOf('.', wordEnd);
+        if (sentence >= 0 && sentence < limit) return sentence + 1;
+        int end = limit;
+        if (end < text.length()) {
+            while (end > wordEnd && !Character.isWhitespace(text.charAt(end))) end--;
+        }
+        return end;
+    }
+
+    private static void highlight(StringBuilder snippet, String text, int start, int end, int[] positions) {
+        int i = Arrays.binarySearch(positions, start);
+        if (i < 0) i = -i - 1;
+        int cursor = start;
+        for (; i < positions.length && positions[i] < end; i++) {
+            int position = positions[i];
+            if (position < cursor) continue;
+            int wordEnd = Math.min(Tokenizer.wordEnd(text, position), end);
+            snippet.append(text, cursor, position).append("<b>").append(text, position, wordEnd).append("</b>");
+            cursor = wordEnd;
+        }
+        snippet.append(text, cursor, end);
+    }
+}
@@ -0,0 +1,42 @@
+package searchengine.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий пул из search-settings.snippet-threads потоков для построения сниппетов
+ * потокового поиска. Очередь не ограничена: число задач одного запроса
+ * ограничивает сам запрос параметром search-settings.snippet-concurrency.
+ */
+@Component
+public class SnippetExecutor implements Executor {
+    private final ThreadPoolExecutor pool;
+
+    public SnippetExecutor(SearchSettings settings) {
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(settings.getSnippetThreads(), settings.getSnippetThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "snippet-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
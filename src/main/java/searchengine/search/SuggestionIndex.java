@@ -0,0 +1,500 @@
+package searchengine.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Словарь лемм для подсказок при наборе запроса. Частота леммы — число
+ * страниц всех сайтов, на которых она встречается.
+ * <p>
+ * Леммы хранятся отсортированными в одном массиве символов, поэтому все
+ * продолжения префикса занимают непрерывный диапазон, который находится
+ * двоичным поиском. Над частотами построено дерево отрезков с индексом
+ * самой частой леммы в каждом узле: n лучших продолжений выбираются за
+ * O(n log m) независимо от длины диапазона.
+ * <p>
+ * Словарь загружается из таблицы lemma после старта и раз в
+ * search-settings.suggest-reload-interval, а в промежутке пополняется
+ * индексатором. Новые леммы копятся в отдельном дереве и вливаются
+ * в массивы, когда их набирается search-settings.suggest-merge-threshold.
+ * Уменьшение частот при удалении страниц учитывается только при перезагрузке.
+ * <p>
+ * Тот же словарь исправляет опечатки в запросе: {@link #similar(String, int, int)}.
+ */
+@Component
+public class SuggestionIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionIndex.class);
+    private static final String SELECT_LEMMAS = "SELECT lemma, SUM(frequency) AS frequency FROM lemma GROUP BY lemma";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int mergeThreshold;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Dictionary dictionary = Dictionary.EMPTY;
+    private TreeMap<String, Integer> recent = new TreeMap<>();
+
+    public SuggestionIndex(JdbcTemplate jdbcTemplate, SearchSettings settings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mergeThreshold = settings.getSuggestMergeThreshold();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread thread = new Thread(this::reload, "suggestion-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Scheduled(fixedDelayString = "${search-settings.suggest-reload-interval:3600000}",
+            initialDelayString = "${search-settings.suggest-reload-interval:3600000}")
+    public void reload() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+            jdbcTemplate.query(SELECT_LEMMAS, rs -> {
+                entries.add(Map.entry(rs.getString("lemma"), rs.getInt("frequency")));
+            });
+            entries.sort(Map.Entry.comparingByKey());
+            Dictionary loaded = Dictionary.build(entries);
+            lock.writeLock().lock();
+            try {
+                dictionary = loaded;
+                recent = new TreeMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Suggestion dictionary loaded: {} lemmas, {} KB in {} ms",
+                    loaded.size(), loaded.memoryBytes() / 1024, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Failed to load suggestion dictionary", e);
+        }
+    }
+
+    /**
+     * Прибавляет частоты лемм, записанных индексатором.
+     *
+     * @param deltas лемма и число новых страниц с ней
+     */
+    public void add(Map<String, Integer> deltas) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                int index = dictionary.indexOf(delta.getKey());
+                if (index >= 0) {
+                    dictionary.increment(index, delta.getValue());
+                } else {
+                    recent.merge(delta.getKey(), delta.getValue(), Integer::sum);
+                }
+            }
+            if (recent.size() >= mergeThreshold) {
+                dictionary = dictionary.merge(recent);
+                recent = new TreeMap<>();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            dictionary = Dictionary.EMPTY;
+            recent = new TreeMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return до limit лемм, начинающихся с prefix, по убыванию частоты
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Suggestion> suggestions = dictionary.top(prefix, limit);
+            SortedMap<String, Integer> added = recent.subMap(prefix, prefix + Character.MAX_VALUE);
+            if (added.isEmpty()) {
+                return suggestions;
+            }
+            List<Suggestion> merged = new ArrayList<>(suggestions);
+            added.forEach((lemma, frequency) -> merged.add(new Suggestion(lemma, frequency)));
+            merged.sort(Suggestion.ORDER);
+            return merged.subList(0, Math.min(limit, merged.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет в словаре леммы, похожие на слово с опечаткой. Словарь обходится
+     * как неявное дерево префиксов: для общего префикса соседних лемм строки
+     * матрицы Левенштейна не пересчитываются, а все леммы с префиксом,
+     * который уже дальше maxDistance от слова, пропускаются одним двоичным поиском.
+     *
+     * @return до limit лемм на расстоянии от 1 до maxDistance, сначала ближайшие,
+     *         при равном расстоянии более частые
+     */
+    public List<Suggestion> similar(String word, int maxDistance, int limit) {
+        if (word.isEmpty() || maxDistance <= 0 || limit <= 0) {
+            return List.of();
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            dictionary.similar(word, maxDistance, candidates);
+            recent.forEach((lemma, frequency) -> {
+                if (Math.abs(lemma.length() - word.length()) <= maxDistance) {
+                    int distance = distance(lemma, word);
+                    if (distance > 0 && distance <= maxDistance) {
+                        candidates.add(new Candidate(new Suggestion(lemma, frequency), distance));
+                    }
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        candidates.sort(Comparator.comparingInt(Candidate::distance)
+                .thenComparing(Candidate::suggestion, Suggestion.ORDER));
+        return candidates.stream().limit(limit).map(Candidate::suggestion).toList();
+    }
+
+    public boolean contains(String lemma) {
+        lock.readLock().lock();
+        try {
+            return dictionary.indexOf(lemma) >= 0 || recent.containsKey(lemma);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return dictionary.size() + recent.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return оценка памяти массивов словаря в байтах без лемм, ещё не влитых в массивы
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return dictionary.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Suggestion(String lemma, int frequency) {
+        static final Comparator<Suggestion> ORDER = Comparator.comparingInt(Suggestion::frequency).reversed()
+                .thenComparing(Suggestion::lemma);
+    }
+
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private record Candidate(Suggestion suggestion, int distance) {
+    }
+
+    /**
+     * Отсортированные леммы в массиве chars: лемма i занимает символы
+     * с starts[i] по starts[i + 1]. Листья дерева tree лежат с позиции capacity,
+     * каждый узел хранит индекс самой частой леммы своего отрезка или -1.
+     */
+    private static final class Dictionary {
+        static final Dictionary EMPTY = build(List.of());
+
+        private final char[] chars;
+        private final int[] starts;
+        private final int[] frequencies;
+        private final int[] tree;
+        private final int capacity;
+
+        private Dictionary(char[] chars, int[] starts, int[] frequencies) {
+            this.chars = chars;
+            this.starts = starts;
+            this.frequencies = frequencies;
+            this.capacity = Math.max(Integer.highestOneBit(Math.max(frequencies.length, 1) * 2 - 1), 1);
+            this.tree = new int[capacity * 2];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < frequencies.length; i++) {
+                tree[capacity + i] = i;
+            }
+            for (int node = capacity - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        static Dictionary build(List<Map.Entry<String, Integer>> sorted) {
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : sorted) {
+                length += entry.getKey().length();
+            }
+            char[] chars = new char[length];
+            int[] starts = new int[sorted.size() + 1];
+            int[] frequencies = new int[sorted.size()];
+            int position = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                String lemma = sorted.get(i).getKey();
+                lemma.getChars(0, lemma.length(), chars, position);
+                starts[i] = position;
+                frequencies[i] = sorted.get(i).getValue();
+                position += lemma.length();
+            }
+            starts[sorted.size()] = position;
+            return new Dictionary(chars, starts, frequencies);
+        }
+
+        /**
+         * Слияние двух отсортированных последовательностей за линейное время.
+         */
+        Dictionary merge(SortedMap<String, Integer> added) {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(size() + added.size());
+            Iterator<Map.Entry<String, Integer>> iterator = added.entrySet().iterator();
+            Map.Entry<String, Integer> next = iterator.hasNext() ? iterator.next() : null;
+            for (int i = 0; i < size(); i++) {
+                String lemma = lemma(i);
+                while (next != null && next.getKey().compareTo(lemma) < 0) {
+                    entries.add(next);
+                    next = iterator.hasNext() ? iterator.next() : null;
+                }
+                entries.add(Map.entry(lemma, frequencies[i]));
+            }
+            while (next != null) {
+                entries.add(next);
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            return build(entries);
+        }
+
+        int size() {
+            return frequencies.length;
+        }
+
+        String lemma(int i) {
+            return new String(chars, starts[i], starts[i + 1] - starts[i]);
+        }
+
+        int indexOf(String lemma) {
+            int index = lowerBound(lemma);
+            return index < size() && compare(index, lemma) == 0 ? index : -1;
+        }
+
+        void increment(int index, int delta) {
+            frequencies[index] += delta;
+            for (int node = (capacity + index) >>> 1; node > 0; node >>>= 1) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        /**
+         * Выбирает лучшие леммы диапазона: из очереди берётся отрезок с самой
+         * частой леммой, лемма попадает в ответ, а отрезок делится на две части по ней.
+         */
+        List<Suggestion> top(String prefix, int limit) {
+            int from = lowerBound(prefix);
+            int to = lowerBound(prefix + Character.MAX_VALUE);
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, to - from));
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0 : better(a[2], b[2]) == a[2] ? -1 : 1);
+            offerRange(ranges, from, to);
+            while (!ranges.isEmpty() && suggestions.size() < limit) {
+                int[] range = ranges.poll();
+                suggestions.add(new Suggestion(lemma(range[2]), frequencies[range[2]]));
+                offerRange(ranges, range[0], range[2]);
+                offerRange(ranges, range[2] + 1, range[1]);
+            }
+            return suggestions;
+        }
+
+        /**
+         * Строка rows[d] матрицы Левенштейна относится к первым d символам текущей леммы.
+         * Следующая лемма переиспользует строки своего общего префикса с предыдущей.
+         * В строке считается только полоса шириной 2 * maxDistance + 1 вокруг диагонали:
+         * клетки вне её заведомо больше maxDistance.
+         */
+        void similar(String word, int maxDistance, List<Candidate> candidates) {
+            int width = word.length();
+            int maxDepth = width + maxDistance;
+            int outside = maxDistance + 1;
+            int[][] rows = new int[maxDepth + 1][width + 2];
+            for (int j = 0; j <= width; j++) {
+                rows[0][j] = Math.min(j, outside);
+            }
+            rows[0][width + 1] = outside;
+            int previous = -1;
+            int computed = 0;
+            int i = 0;
+            while (i < size()) {
+                int start = starts[i];
+                int length = starts[i + 1] - start;
+                int depth = previous < 0 ? 0 : Math.min(computed, commonPrefix(previous, i));
+                boolean pruned = false;
+                while (depth < Math.min(length, maxDepth)) {
+                    char c = chars[start + depth];
+                    int[] above = rows[depth];
+                    int[] row = rows[depth + 1];
+                    int k = depth + 1;
+                    int from = Math.max(1, k - maxDistance);
+                    int to = Math.min(width, k + maxDistance);
+                    row[from - 1] = from == 1 ? Math.min(k, outside) : outside;
+                    int min = from == 1 ? row[0] : outside;
+                    for (int j = from; j <= to; j++) {
+                        int cost = word.charAt(j - 1) == c ? 0 : 1;
+                        row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                        min = Math.min(min, row[j]);
+                    }
+                    row[to + 1] = outside;
+                    depth++;
+                    if (min > maxDistance) {
+                        pruned = true;
+                        break;
+                    }
+                }
+                previous = i;
+                computed = depth;
+                if (pruned || length > maxDepth) {
+                    // Все леммы с этим префиксом дальше maxDistance от слова.
+                    i = skipPrefix(i, depth);
+                    continue;
+                }
+                if (width - length <= maxDistance) {
+                    int distance = rows[length][width];
+                    if (distance > 0 && distance <= maxDistance) {
+                        candidates.add(new Candidate(new Suggestion(lemma(i), frequencies[i]), distance));
+                    }
+                }
+                i++;
+            }
+        }
+
+        /**
+         * @return индекс первой леммы после index, у которой другие первые depth символов;
+         * леммы с общим префиксом идут подряд, поэтому граница ищется галопом и двоичным поиском
+         */
+        private int skipPrefix(int index, int depth) {
+            int low = index;
+            int step = 1;
+            int high = index + 1;
+            while (high < size() && commonPrefix(index, high) >= depth) {
+                low = high;
+                step <<= 1;
+                high = index + step;
+            }
+            high = Math.min(high, size());
+            while (low + 1 < high) {
+                int middle = (low + high) >>> 1;
+                if (commonPrefix(index, middle) >= depth) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return high;
+        }
+
+        private int commonPrefix(int a, int b) {
+            int startA = starts[a];
+            int startB = starts[b];
+            int common = Math.min(starts[a + 1] - startA, starts[b + 1] - startB);
+            int i = 0;
+            while (i < common && chars[startA + i] == chars[startB + i]) {
+                i++;
+            }
+            return i;
+        }
+
+        long memoryBytes() {
+            return (long) chars.length * Character.BYTES
+                    + (long) (starts.length + frequencies.length + tree.length) * Integer.BYTES;
+        }
+
+        private void offerRange(PriorityQueue<int[]> ranges, int from, int to) {
+            if (from < to) {
+                ranges.add(new int[]{from, to, best(from, to)});
+            }
+        }
+
+        /**
+         * @return индекс самой частой леммы на отрезке [from, to)
+         */
+        private int best(int from, int to) {
+            int result = -1;
+            for (int left = from + capacity, right = to + capacity; left < right; left >>>= 1, right >>>= 1) {
+                if ((left & 1) == 1) {
+                    result = better(result, tree[left++]);
+                }
+                if ((right & 1) == 1) {
+                    result = better(result, tree[--right]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * При равной частоте лучше лемма, стоящая раньше по алфавиту.
+         */
+        private int better(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            return frequencies[a] > frequencies[b] || (frequencies[a] == frequencies[b] && a < b) ? a : b;
+        }
+
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(middle, key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int compare(int index, String key) {
+            int start = starts[index];
+            int length = starts[index + 1] - start;
+            int common = Math.min(length, key.length());
+            for (int i = 0; i < common; i++) {
+                int difference = chars[start + i] - key.charAt(i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length - key.length();
+        }
+    }
+}
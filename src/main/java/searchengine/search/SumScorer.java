@@ -0,0 +1,11 @@
+package searchengine.search;
+
+/**
+ * Прежняя формула: релевантность равна сумме частот лемм запроса на странице.
+ */
+public class SumScorer implements Scorer {
+    @Override
+    public TermWeight forTerm(int documentFrequency, CollectionStatistics.SiteStatistics site) {
+        return (frequency, documentLength) -> frequency;
+    }
+}
@@ -0,0 +1,113 @@
+package searchengine.search;
+
+/**
+ * Отбор k лучших страниц без сортировки всех совпадений.
+ * Двоичная min-куча на примитивных массивах: в вершине лежит худшая
+ * из отобранных страниц, и новая страница заменяет её, только если она лучше.
+ * При равной релевантности выше ставится страница с меньшим идентификатором,
+ * чтобы порядок не зависел от порядка обхода.
+ */
+public class TopK {
+    private final int capacity;
+    private final int[] pageIds;
+    private final float[] scores;
+    private int size;
+    private boolean sorted;
+
+    public TopK(int capacity) {
+        this.capacity = capacity;
+        this.pageIds = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    public void offer(int pageId, float score) {
+        if (sorted) {
+            throw new IllegalStateException("TopK is already sorted");
+        }
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (better(pageId, score, 0)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Упорядочивает отобранные страницы по убыванию релевантности
+     * пирамидальной сортировкой на месте. После вызова добавлять страницы нельзя.
+     */
+    public void sortDescending() {
+        int count = size;
+        while (size > 1) {
+            swap(0, size - 1);
+            size--;
+            siftDown(0);
+        }
+        size = count;
+        sorted = true;
+    }
+
+    public int pageId(int i) {
+        return pageIds[i];
+    }
+
+    public float score(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @return true, если страница лучше записи кучи на позиции i
+     */
+    private boolean better(int pageId, float score, int i) {
+        return score > scores[i] || (score == scores[i] && pageId < pageIds[i]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(pageIds[parent], scores[parent], i)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(pageIds[left], scores[left], right)) {
+                worst = right;
+            }
+            if (!better(pageIds[i], scores[i], worst)) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = pageIds[a];
+        pageIds[a] = pageIds[b];
+        pageIds[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
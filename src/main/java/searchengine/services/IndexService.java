@@ -7,5 +7,6 @@ public interface IndexService {
     IndexResponse startIndexing();
     IndexResponse stopIndexing();
     IndexResponse indexPage(String url);
-    SearchResultDto search(String query, String site, Integer offset, Integer limit) ;
+    SearchResultDto search(String query, String site, Integer offset, Integer limit, boolean fuzzy);
+    SearchStream searchStream(String query, String site, Integer offset, Integer limit, boolean fuzzy);
 }
@@ -1,106 +1,130 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.SearchSettings;
 import searchengine.config.SitesList;
+import searchengine.crawler.CrawlerFactory;
+import searchengine.crawler.FetchResult;
+import searchengine.crawler.PageFetcher;
+import searchengine.crawler.ParsedPage;
+import searchengine.crawler.SiteCrawler;
 import searchengine.dto.index.IndexResponse;
 import searchengine.dto.index.SearchResultData;
 import searchengine.dto.index.SearchResultDto;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
+import searchengine.dto.index.SearchSnippetData;
+import searchengine.metrics.SearchMetrics;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.repository.projection.PageHeader;
+import searchengine.repository.projection.PageText;
+import searchengine.search.IndexEpochs;
+import searchengine.search.ResultCache;
+import searchengine.search.SearchHits;
+import searchengine.search.SearchQuery;
+import searchengine.search.ShardedSearch;
+import searchengine.search.SnippetBuilder;
+import searchengine.search.SnippetExecutor;
+import searchengine.search.SuggestionIndex;
 import searchengine.shared.SiteStatus;
+import searchengine.utility.ContentCodec;
 import searchengine.utility.LemmaUtils;
+import searchengine.utility.PositionCodec;
+import searchengine.utility.UrlUtils;
 
 import javax.transaction.Transactional;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class IndexServiceImpl implements IndexService {
     private static final Logger logger = LoggerFactory.getLogger(IndexServiceImpl.class);
+    private static final int SNIPPET_LENGTH = 300;
+    private static final int FUZZY_MIN_LENGTH = 3;
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final Map<Integer, SiteCrawler> crawlers = new ConcurrentHashMap<>();
 
     private final SitesList sitesList;
+    private final SearchSettings searchSettings;
+    private final CrawlerSettings crawlerSettings;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final SiteService siteService;
-
-    private static String extractDomain(String url) {
-        try {
-            URI uri = new URI(url);
-            String host = uri.getHost();
-            if (host != null) {
-                return host;
-            }
-        } catch (URISyntaxException e) {
-            logger.error("Invalid URL: " + url);
-        }
-        return null;
-    }
-
-    private static String extractPath(String url) {
-        try {
-            URI uri = new URI(url);
-            String path = uri.getPath();
-            if (path != null) {
-                return path.isEmpty() ? "/" : path;
-            }
-        } catch (URISyntaxException e) {
-            logger.error("Invalid URL: " + url);
-        }
-        return null;
-    }
+    private final CrawlerFactory crawlerFactory;
+    private final PageFetcher pageFetcher;
+    private final SiteCounters siteCounters;
+    private final SearchMetrics searchMetrics;
+    private final LemmaUtils lemmaUtils;
+    private final IndexingBuffer indexingBuffer;
+    private final IndexEpochs indexEpochs;
+    private final ResultCache resultCache;
+    private final ShardedSearch shardedSearch;
+    private final SnippetExecutor snippetExecutor;
+    private final SuggestionIndex suggestionIndex;
 
     @Override
     public IndexResponse startIndexing() {
         if (siteRepository.existsByStatus(SiteStatus.INDEXING)) {
             return new IndexResponse(false, "Индексация уже запущена");
         }
-        List<Site> sites = siteService.deleteAllAndSaveSites();
-        sites.forEach(i -> executor.submit(() -> {
-            try {
-                RecursiveIndex index = new RecursiveIndex(i.getUrl(), "/", i);
-                Site invoke = new ForkJoinPool().invoke(index);
-            } catch (Exception ex) {
-                logger.error("Error while indexing | {}", ex.getMessage());
-                i.setStatus(SiteStatus.FAILED);
-                i.setError(ex.getMessage());
-            }
-            i.setStatus(SiteStatus.INDEXED);
-            siteRepository.save(i);
-        }));
-        executor.shutdown();
+        List<Site> sites = siteService.prepareSites(crawlerSettings.isIncremental());
+        sites.forEach(i -> {
+            SiteCrawler crawler = crawlerFactory.create(i, crawlDelay(i));
+            crawlers.put(i.getId(), crawler);
+            executor.submit(() -> crawlSite(i, crawler));
+        });
+        return new IndexResponse(true, null);
+    }
 
+    private long crawlDelay(Site site) {
+        return sitesList.getSites().stream()
+                .filter(i -> i.getName().equals(site.getName()))
+                .findFirst()
+                .map(i -> i.crawlDelay(crawlerSettings.getDelay()))
+                .orElse(crawlerSettings.getDelay());
+    }
+
+    private void crawlSite(Site site, SiteCrawler crawler) {
         try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            sites.stream().peek(i -> {
-                i.setStatus(SiteStatus.FAILED);
-                i.setError(e.getMessage());
-            });
+            crawler.crawl();
+            indexingBuffer.flush(site);
+            if (crawler.isStopped()) {
+                return;
+            }
+            site.setStatus(SiteStatus.INDEXED);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            site.setStatus(SiteStatus.FAILED);
+            site.setError(ex.getMessage());
+        } catch (Exception ex) {
+            logger.error("Error while indexing | {}", ex.getMessage());
+            site.setStatus(SiteStatus.FAILED);
+            site.setError(ex.getMessage());
+        } finally {
+            crawlers.remove(site.getId());
+            logger.info("Lemmatization throughput: {} MB/s", String.format("%.1f", lemmaUtils.getThroughputMbPerSecond()));
         }
-        return new IndexResponse(true, null);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        indexEpochs.bump(site.getId());
     }
 
     @Override
@@ -108,7 +132,7 @@ public class IndexServiceImpl implements IndexService {
     public IndexResponse stopIndexing() {
         if (!siteRepository.existsByStatus(SiteStatus.INDEXING))
             return new IndexResponse(false, "Индексация не запущена");
-        executor.shutdown();
+        crawlers.values().forEach(SiteCrawler::stop);
         List<Site> byNameIn = siteRepository.findByNameInAndStatus(sitesList.getSites().stream().map(it -> it.getName()).toList(), SiteStatus.INDEXING);
         siteRepository.saveAll(byNameIn.stream().peek(i -> {
             i.setStatus(SiteStatus.FAILED);
@@ -124,7 +148,7 @@ public class IndexServiceImpl implements IndexService {
             if (!url.startsWith("https://")) {
                 url = "https://" + url;
             }
-            String domain = extractDomain(url);
+            String domain = UrlUtils.extractDomain(url);
             if (domain == null) return new IndexResponse(false, "Invalid URL");
 
             var s = sitesList.getSites().stream().filter(i -> i.getUrl().contains(domain)).findFirst().orElse(null);
@@ -133,20 +157,33 @@ public class IndexServiceImpl implements IndexService {
                 return new IndexResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
 
             site = siteService.findAndSaveSite(s);
-            String path = extractPath(url);
+            String path = UrlUtils.extractPath(url);
             siteService.deletePage(site, path);
 
-            Connection.Response response = Jsoup.connect(url).userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6").referrer("http://www.google.com").timeout(5000).ignoreContentType(true).execute();
-            Document parse = response.parse();
+            FetchResult response = pageFetcher.fetch(url).get();
+            String fetchedPath = UrlUtils.extractPath(response.getUrl());
+            if (!path.equals(fetchedPath)) {
+                siteService.deletePage(site, fetchedPath);
+                path = fetchedPath;
+            }
+            siteCounters.addFetched(site.getId(), response.getBody() == null ? 0 : response.getBody().length);
+            Document parse = response.isHtml() ? response.parse() : null;
             if (parse == null) {
                 return new IndexResponse(false, "Failed to fetch page content");
             }
 
-            Page page = siteService.createPage(site, path, parse.toString(), response.statusCode());
-            if (response.statusCode() == 200) {
-                siteService.processPageContent(page, site, parse.toString());
+            ParsedPage parsed = ParsedPage.of(parse);
+            Page page = siteService.createPage(site, path, parsed, response);
+            if (response.getStatusCode() == 200) {
+                siteService.processPageContent(page, site, parsed.text());
+                indexingBuffer.flush(site);
             }
-        } catch (IOException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Indexing of {} interrupted", url);
+            return new IndexResponse(false, "Индексация страницы прервана");
+        } catch (IOException | ExecutionException e) {
+            siteCounters.addError(site.getId());
             site.setError(e.getMessage());
             site.setStatus(SiteStatus.FAILED);
             logger.error(e.getMessage());
@@ -156,13 +193,90 @@ public class IndexServiceImpl implements IndexService {
                 site.setStatusTime(LocalDateTime.now());
                 site.setStatus(SiteStatus.INDEXED);
                 siteRepository.save(site);
+                indexEpochs.bump(site.getId());
             }
         }
         return new IndexResponse(true, null);
     }
 
     @Override
-    public SearchResultDto search(String query, String site, Integer offset, Integer limit) {
+    public SearchResultDto search(String query, String site, Integer offset, Integer limit, boolean fuzzy) {
+        long start = System.nanoTime();
+        try {
+            return searchPage(query, site, offset, limit, fuzzy);
+        } finally {
+            searchMetrics.getSearch().recordSince(start);
+        }
+    }
+
+    private SearchResultDto searchPage(String query, String site, Integer offset, Integer limit, boolean fuzzy) {
+        Ranking ranking = rank(query, site, offset, limit, fuzzy);
+        if (ranking.response() != null) return ranking.response();
+
+        SearchHits hits = ranking.hits();
+        List<SearchResultData> absolute = createSearchResults(hits, ranking.lemmaSet());
+
+        SearchResultDto resultDto = new SearchResultDto();
+        resultDto.setResult(true);
+        resultDto.setCount(hits.total());
+        resultDto.setData(absolute);
+        if (hits.complete()) {
+            resultCache.put(ranking.key(), ranking.epoch(), resultDto);
+        }
+        return resultDto;
+    }
+
+    /**
+     * Список найденных страниц собирается из адресов без загрузки текстов,
+     * а сниппеты строятся, когда ответ уже отправляется. Такой ответ не кешируется,
+     * чтобы не держать в памяти все сниппеты большой порции.
+     * Время запроса учитывается при закрытии потока, то есть вместе с построением сниппетов.
+     */
+    @Override
+    public SearchStream searchStream(String query, String site, Integer offset, Integer limit, boolean fuzzy) {
+        long start = System.nanoTime();
+        SearchStream stream;
+        try {
+            stream = openStream(query, site, offset, limit, fuzzy);
+        } catch (RuntimeException e) {
+            searchMetrics.getStream().recordSince(start);
+            throw e;
+        }
+        return stream.onClose(() -> searchMetrics.getStream().recordSince(start));
+    }
+
+    private SearchStream openStream(String query, String site, Integer offset, Integer limit, boolean fuzzy) {
+        Ranking ranking = rank(query, site, offset, limit, fuzzy);
+        if (ranking.response() != null) return SearchStream.of(ranking.response());
+
+        SearchHits hits = ranking.hits();
+        List<Integer> pageIds = hits.hits().stream().map(SearchHits.Hit::pageId).toList();
+        Map<Integer, PageHeader> headers = pageIds.isEmpty() ? Map.of() : pageRepository.findHeadersByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(PageHeader::getId, header -> header));
+        List<SearchResultData> data = new ArrayList<>(headers.size());
+        List<Integer> found = new ArrayList<>(headers.size());
+        for (SearchHits.Hit hit : hits.hits()) {
+            PageHeader header = headers.get(hit.pageId());
+            if (header != null) {
+                SearchResultData resultData = new SearchResultData();
+                resultData.setRelevance(hit.relevance());
+                resultData.setSite(header.getSiteUrl());
+                resultData.setSiteName(header.getSiteName());
+                resultData.setUri(header.getPath());
+                data.add(resultData);
+                found.add(hit.pageId());
+            }
+        }
+        SearchResultDto head = new SearchResultDto(true, null, hits.total(), data);
+        return new SearchStream(head, consumer -> streamSnippets(found, hits.lemmaIds(), ranking.lemmaSet(), consumer));
+    }
+
+    /**
+     * Отбирает страницы запрошенной порции.
+     *
+     * @return ранжирование или готовый ответ: ошибку, пустой результат или результат из кеша
+     */
+    private Ranking rank(String query, String site, Integer offset, Integer limit, boolean fuzzy) {
         List<Site> sites = new ArrayList<>();
         if (site == null) sites.addAll(siteRepository.findAll());
         else {
@@ -170,137 +284,209 @@ public class IndexServiceImpl implements IndexService {
             sites.add(siteRepository.findByName(siteConfig.getName()).get());
         }
         if (!sites.stream().allMatch(i -> i.getStatus() == SiteStatus.INDEXED))
-            return new SearchResultDto(false, "Sites not Indexed", null, null);
+            return Ranking.of(new SearchResultDto(false, "Sites not Indexed", null, null));
 
-        Set<String> lemmaSet = null;
-        try {
-            lemmaSet = LemmaUtils.getInstance().getLemmaSet(query);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        if (lemmaSet.isEmpty()) return new SearchResultDto(false, "Query is Empty", null, null);
-        Integer maxFrequencyBySiteIn = lemmaRepository.findMaxFrequencyBySiteIn(sites);
-        int maxFrequency = (int) (maxFrequencyBySiteIn * 0.9);
-        List<Lemma> lemmas = lemmaRepository.findBySiteInAndLemmaInAndFrequencyLessThanOrderByFrequencyAsc(sites, lemmaSet.stream().toList(), maxFrequency);
+        SearchQuery searchQuery = SearchQuery.parse(query, lemmaUtils);
+        Set<String> lemmaSet = searchQuery.lemmas();
+        if (lemmaSet.isEmpty()) return Ranking.of(new SearchResultDto(false, "Query is Empty", null, null));
 
-        if (lemmas.isEmpty()) return new SearchResultDto(true, null, 0, List.of());
+        List<Integer> siteIds = sites.stream().map(Site::getId).toList();
+        ResultCache.Key key = new ResultCache.Key(lemmaSet.stream().sorted().toList(), searchQuery.phrases(),
+                site == null ? null : site.toLowerCase(Locale.ROOT), offset, limit, fuzzy);
+        long epoch = indexEpochs.current(siteIds);
+        SearchResultDto cached = resultCache.get(key, siteIds);
+        if (cached != null) return Ranking.of(cached);
 
-        List<Index> indices = indexRepository.findByLemma(lemmas.get(0));
-        List<Page> pages = indices.stream().map(Index::getPage).toList();
-        for (int i = 1; i < lemmas.size(); i++) {
-            Lemma lemma = lemmas.get(i);
-            indices = indexRepository.findByLemmaAndPageIn(lemma, pages);
-            if (indices.isEmpty()) return new SearchResultDto(true, null, 0, List.of());
+        Map<String, Set<String>> candidates = expandLemmas(lemmaSet, fuzzy);
+        List<String> candidateLemmas = candidates.values().stream().flatMap(Set::stream).distinct().toList();
+        Integer maxFrequencyBySiteIn = lemmaRepository.findMaxFrequencyBySiteIn(sites);
+        int maxFrequency = (int) (maxFrequencyBySiteIn * 0.9);
+        Set<String> found = new HashSet<>(lemmaRepository.findPresentLemmas(siteIds, candidateLemmas, maxFrequency));
+        Map<String, Set<String>> terms = new LinkedHashMap<>();
+        candidates.forEach((lemma, alternatives) -> {
+            Set<String> present = new LinkedHashSet<>(alternatives);
+            present.retainAll(found);
+            if (!present.isEmpty()) terms.put(lemma, present);
+        });
+        if (terms.isEmpty()) {
+            SearchResultDto empty = new SearchResultDto(true, null, 0, List.of());
+            resultCache.put(key, epoch, empty);
+            return Ranking.of(empty);
         }
 
-        Map<Page, Double> relative = indices.stream().collect(Collectors.toMap(Index::getPage, Index::getRank, Double::sum));
-        Double maxValue = relative.values().stream().max(Double::compare).orElse(null);
-        List<SearchResultData> absolute = relative.entrySet().stream().peek(i -> i.setValue(i.getValue() / maxValue)).sorted(Map.Entry.comparingByValue()).skip(offset).limit(limit).map(i -> createSearchResult(i.getKey(), i.getValue(), query)).collect(Collectors.toList());
+        SearchHits hits = shardedSearch.search(siteIds, terms, searchQuery.phrases(), maxFrequency, offset, limit);
+        if (!hits.complete()) {
+            searchMetrics.getTimeouts().increment();
+        }
+        if (!hits.complete() && hits.hits().isEmpty() && hits.total() == 0) {
+            return Ranking.of(new SearchResultDto(false, "Search timed out", null, null));
+        }
+        Set<String> highlighted = terms.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        return new Ranking(null, hits, highlighted, key, epoch);
+    }
 
+    /**
+     * Сопоставляет каждой лемме запроса леммы, которые ищутся вместо неё.
+     * Обычно это сама лемма. В нечётком поиске лемма, которой нет в словаре,
+     * заменяется не более чем search-settings.fuzzy-max-expansions ближайшими леммами:
+     * на расстоянии 1 для слов до 5 букв и до search-settings.fuzzy-max-distance для более длинных.
+     */
+    private Map<String, Set<String>> expandLemmas(Set<String> lemmas, boolean fuzzy) {
+        Map<String, Set<String>> expanded = new LinkedHashMap<>();
+        for (String lemma : lemmas) {
+            Set<String> alternatives = new LinkedHashSet<>();
+            if (fuzzy && lemma.length() >= FUZZY_MIN_LENGTH && !suggestionIndex.contains(lemma)) {
+                int distance = Math.min(lemma.length() <= 5 ? 1 : 2, searchSettings.getFuzzyMaxDistance());
+                suggestionIndex.similar(lemma, distance, searchSettings.getFuzzyMaxExpansions())
+                        .forEach(i -> alternatives.add(i.lemma()));
+                if (!alternatives.isEmpty()) {
+                    logger.debug("Lemma {} expanded to {}", lemma, alternatives);
+                }
+            }
+            if (alternatives.isEmpty()) {
+                alternatives.add(lemma);
+            }
+            expanded.put(lemma, alternatives);
+        }
+        return expanded;
+    }
 
-        SearchResultDto resultDto = new SearchResultDto();
-        resultDto.setResult(true);
-        resultDto.setCount(absolute.size());
-        resultDto.setData(absolute);
-        return resultDto;
+    /**
+     * Адреса, тексты страниц и позиции лемм запроса загружаются тремя запросами
+     * только нужных столбцов и только для выбранной порции результатов.
+     */
+    private List<SearchResultData> createSearchResults(SearchHits searchHits, Set<String> lemmaSet) {
+        List<SearchHits.Hit> hits = searchHits.hits();
+        if (hits.isEmpty()) return List.of();
+        List<Integer> pageIds = hits.stream().map(SearchHits.Hit::pageId).toList();
+        Map<Integer, PageHeader> headers = pageRepository.findHeadersByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(PageHeader::getId, header -> header));
+        Map<Integer, PageText> texts = pageRepository.findTextsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(PageText::getId, text -> text));
+        Map<Integer, List<int[]>> offsets = new HashMap<>();
+        indexRepository.findOffsets(pageIds, searchHits.lemmaIds()).stream()
+                .filter(i -> i.getOffsets() != null)
+                .forEach(i -> offsets.computeIfAbsent(i.getPageId(), id -> new ArrayList<>()).add(PositionCodec.decode(i.getOffsets())));
+        List<SearchResultData> results = new ArrayList<>(hits.size());
+        for (SearchHits.Hit hit : hits) {
+            PageHeader header = headers.get(hit.pageId());
+            PageText text = texts.get(hit.pageId());
+            if (header != null && text != null) {
+                results.add(createSearchResult(header, text, hit.relevance(),
+                        offsets.getOrDefault(hit.pageId(), List.of()), lemmaSet));
+            }
+        }
+        return results;
     }
 
-    private SearchResultData createSearchResult(Page page, double relevance, String query) {
+    private SearchResultData createSearchResult(PageHeader header, PageText page, double relevance, List<int[]> offsets,
+                                                Set<String> lemmaSet) {
         SearchResultData resultDto = new SearchResultData();
         resultDto.setRelevance(relevance);
-        resultDto.setSite(page.getSite().getUrl());
-        resultDto.setSiteName(page.getSite().getName());
-        resultDto.setUri(page.getPath());
-        Document parse = Jsoup.parse(page.getContent());
-        String title = parse.title();
-        resultDto.setTitle(title);
-        resultDto.setSnippet(extractSnippet(parse, query));
+        resultDto.setSite(header.getSiteUrl());
+        resultDto.setSiteName(header.getSiteName());
+        resultDto.setUri(header.getPath());
+        SearchSnippetData snippet = createSnippet(0, page.getTitle(), decompressText(page),
+                () -> siteService.findPageContent(header.getId()).orElse(""), offsets, lemmaSet);
+        resultDto.setTitle(snippet.getTitle());
+        resultDto.setSnippet(snippet.getSnippet());
         return resultDto;
     }
 
-    private String extractSnippet(Document parse, String query) {
-        String text = parse.text();
+    /**
+     * @return текст страницы или null, если он не сохранён или строки page_content ещё нет:
+     * тогда сниппет строится по HTML
+     */
+    private static String decompressText(PageText page) {
+        return page.getText() == null ? null : ContentCodec.decompress(page.getText());
+    }
 
-        List<String> snippets = new ArrayList<>();
-        HashMap<String, String> textMap = null;
-        Set<String> queryLemmaSet = null;
-        try {
-            textMap = LemmaUtils.getInstance().wordsToLemmas(text);
-            queryLemmaSet = LemmaUtils.getInstance().getLemmaSet(query);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        List<String> namesInContent = textMap.keySet().stream().filter(queryLemmaSet::contains).map(textMap::get).distinct().toList();
-        if (namesInContent.isEmpty()) return "NOT FOUND";
-
-
-        int maxSize = 300;
-        int eachSize = maxSize / namesInContent.size();
-        int[][] ints = new int[namesInContent.size()][2];
-        int index = 0;
-        for (String str : namesInContent) {
-            int i = text.toLowerCase().indexOf(str);
-            if (isInsideIndex(ints, i)) continue;
-            int start = Math.max(text.lastIndexOf('.', i - 1) + 1, i - eachSize / 2);
-            int end = Math.min(text.indexOf('.', i + 1), i + eachSize / 2);
-            String htmlText = text.substring(i, i + str.length());
-            snippets.add(text.substring(start, end).replaceAll("(?i)\\b" + htmlText + "\\b", "<b>$0</b>"));
-            ints[index][0] = start;
-            ints[index][1] = end;
-            index++;
+    /**
+     * Строит сниппеты параллельно, не больше search-settings.snippet-concurrency страниц
+     * одного запроса одновременно, и сразу передаёт каждый в consumer. Текст страницы
+     * загружается только на время построения её сниппета, поэтому память запроса
+     * не зависит от размера порции. Если consumer не смог записать сниппет
+     * (например, клиент отключился), оставшиеся сниппеты не строятся.
+     */
+    private void streamSnippets(List<Integer> pageIds, List<Integer> lemmaIds, Set<String> lemmaSet,
+                                Consumer<SearchSnippetData> consumer) throws InterruptedException {
+        int concurrency = Math.max(searchSettings.getSnippetConcurrency(), 1);
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicBoolean aborted = new AtomicBoolean();
+        for (int i = 0; i < pageIds.size() && !aborted.get(); i++) {
+            permits.acquire();
+            int index = i;
+            int pageId = pageIds.get(i);
+            try {
+                snippetExecutor.execute(() -> {
+                    try {
+                        SearchSnippetData snippet = loadSnippet(index, pageId, lemmaIds, lemmaSet);
+                        if (snippet != null && !aborted.get()) {
+                            consumer.accept(snippet);
+                        }
+                    } catch (RuntimeException e) {
+                        aborted.set(true);
+                        logger.warn("Snippet streaming aborted | {}", e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
         }
-        return String.join("...", snippets);
+        permits.acquire(concurrency);
     }
 
-    private boolean isInsideIndex(int[][] ints, int i) {
-        for (int[] anInt : ints) {
-            int start = anInt[0];
-            int end = anInt[1];
-            if (start <= i && i <= end) return true;
+    /**
+     * @return сниппет страницы или null, если его не удалось построить
+     */
+    private SearchSnippetData loadSnippet(int index, int pageId, List<Integer> lemmaIds, Set<String> lemmaSet) {
+        try {
+            PageText page = pageRepository.findTextsByIdIn(List.of(pageId)).stream().findFirst().orElse(null);
+            if (page == null) {
+                return new SearchSnippetData(index, null, SnippetBuilder.NOT_FOUND);
+            }
+            List<int[]> offsets = indexRepository.findOffsets(List.of(pageId), lemmaIds).stream()
+                    .filter(i -> i.getOffsets() != null)
+                    .map(i -> PositionCodec.decode(i.getOffsets()))
+                    .toList();
+            return createSnippet(index, page.getTitle(), decompressText(page),
+                    () -> siteService.findPageContent(pageId).orElse(""), offsets, lemmaSet);
+        } catch (RuntimeException e) {
+            logger.error("Failed to build snippet of page {} | {}", pageId, e.getMessage());
+            return null;
         }
-        return false;
     }
 
-    private class RecursiveIndex extends RecursiveTask<Site> {
-
-        private final String url;
-        private final String path;
-        private final Site site;
-
-        public RecursiveIndex(String url, String path, Site site) {
-            this.url = url;
-            this.path = path;
-            this.site = site;
+    private SearchSnippetData createSnippet(int index, String title, String text, Supplier<String> content,
+                                            List<int[]> offsets, Set<String> lemmaSet) {
+        long start = System.nanoTime();
+        if (text == null) {
+            // Страница проиндексирована до появления сохранённого текста.
+            Document parse = Jsoup.parse(content.get());
+            title = parse.title();
+            text = parse.text();
+            offsets = lemmaUtils.collectLemmaOccurrences(text).entrySet().stream()
+                    .filter(i -> lemmaSet.contains(i.getKey()))
+                    .map(i -> i.getValue().offsets())
+                    .toList();
         }
+        SearchSnippetData snippet = new SearchSnippetData(index, title, SnippetBuilder.build(text, offsets, SNIPPET_LENGTH));
+        searchMetrics.getSnippet().recordSince(start);
+        return snippet;
+    }
 
-        @Override
-        protected Site compute() {
-            try {
-                Thread.sleep(ThreadLocalRandom.current().nextInt(500, 3001));
-                Connection.Response response = Jsoup.connect(url).userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6").referrer("http://www.google.com").timeout(5000).ignoreContentType(true).execute();
-                Document parse = response.parse();
-                if (parse == null) {
-                    Thread.currentThread().interrupt();
-                }
+    /**
+     * @param lemmaSet леммы, которые выделяются в сниппетах, включая исправления опечаток
+     * @param response готовый ответ, если ранжировать не понадобилось; тогда остальные поля не заполнены
+     */
+    private record Ranking(SearchResultDto response, SearchHits hits, Set<String> lemmaSet,
+                           ResultCache.Key key, long epoch) {
 
-                Elements elements = parse.select("a[href]");
-                for (Element element : elements) {
-                    String subUrl = element.absUrl("href");
-                    String subPath = element.attr("href");
-                    if (!subUrl.isEmpty() && subUrl.startsWith(url) && !subUrl.contains("#") && !pageRepository.existsByPath(subPath)) {
-                        Page page = siteService.createPage(site, subPath, parse.toString(), response.statusCode());
-                        siteService.updateSite(site);
-                        if (response.statusCode() == 200) {
-                            siteService.processPageContent(page, site, parse.toString());
-                        }
-                        RecursiveIndex index = new RecursiveIndex(subUrl, subPath, site);
-                        index.invoke();
-                    }
-                }
-            } catch (InterruptedException | IOException e) {
-                logger.error(e.getMessage());
-            }
-            return site;
+        static Ranking of(SearchResultDto response) {
+            return new Ranking(response, null, null, null, 0);
         }
     }
 }
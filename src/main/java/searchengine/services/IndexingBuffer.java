@@ -0,0 +1,264 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.metrics.IndexingMetrics;
+import searchengine.model.Site;
+import searchengine.search.CollectionStatistics;
+import searchengine.search.IndexEpochs;
+import searchengine.search.PostingStore;
+import searchengine.search.SuggestionIndex;
+import searchengine.utility.Occurrences;
+import searchengine.utility.PositionCodec;
+import searchengine.utility.TransactionUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Буфер отложенной записи лемм и индекса. Частоты лемм суммируются в памяти
+ * по каждому сайту, а строки индекса накапливаются до заполнения пакета.
+ * При сбросе леммы записываются пакетным upsert по уникальному ключу
+ * (site_id, lemma), поэтому параллельные потоки не теряют приращения частоты
+ * и не создают дубликатов.
+ * Вместе со строками индекса записывается длина страницы в лемматизированных словах.
+ * Только после фиксации транзакции записанные строки индекса добавляются в {@link PostingStore},
+ * длины страниц в {@link CollectionStatistics}, частоты лемм в {@link SuggestionIndex},
+ * число новых лемм и строк индекса в {@link SiteCounters},
+ * а версия индекса сайта в {@link IndexEpochs} увеличивается.
+ * Если запись не удалась или внешняя транзакция откатилась, пакет возвращается в буфер
+ * сайта и записывается со следующим сбросом; после {@value #MAX_ATTEMPTS} неудач подряд
+ * он отбрасывается с ошибкой в журнале.
+ */
+@Component
+@RequiredArgsConstructor
+public class IndexingBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(IndexingBuffer.class);
+    private static final String UPSERT_LEMMA = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+    private static final String SELECT_LEMMA_IDS = "SELECT id, lemma, frequency FROM lemma WHERE site_id = :siteId AND lemma IN (:lemmas)";
+    private static final String UPDATE_PAGE_LENGTH = "UPDATE page SET token_count = ? WHERE id = ?";
+    private static final String INSERT_INDEX = "INSERT INTO index_table (page_id, lemma_id, `rank`, offsets, positions) VALUES (?, ?, ?, ?, ?)";
+    private static final int SELECT_CHUNK = 1000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostingStore postingStore;
+    private final IndexEpochs indexEpochs;
+    private final CollectionStatistics collectionStatistics;
+    private final SuggestionIndex suggestionIndex;
+    private final SiteCounters siteCounters;
+    private final IndexingMetrics metrics;
+    private final Map<Integer, SiteBuffer> buffers = new ConcurrentHashMap<>();
+
+    @Value("${indexing-buffer.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Добавляет леммы страницы в буфер сайта. Если буфер заполнился,
+     * он записывается в базу в вызывающем потоке.
+     */
+    public void add(Site site, Integer pageId, Map<String, Occurrences> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        SiteBuffer buffer = buffers.computeIfAbsent(site.getId(), SiteBuffer::new);
+        Batch full = buffer.add(pageId, lemmas, batchSize);
+        if (full != null) {
+            write(full);
+        }
+    }
+
+    public void flush(Site site) {
+        SiteBuffer buffer = buffers.get(site.getId());
+        if (buffer != null) {
+            write(buffer.drain());
+        }
+    }
+
+    public void clear() {
+        buffers.clear();
+    }
+
+    private void write(Batch batch) {
+        if (batch.rows().isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.execute(status -> write(batch, status.isNewTransaction()));
+        } catch (RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        metrics.getFlush().recordSince(start);
+        metrics.getIndexRows().add(batch.rows().size());
+        logger.debug("Flushed {} lemmas and {} index rows of site {} in {} ms",
+                batch.deltas().size(), batch.rows().size(), batch.siteId(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @param newTransaction false, если запись идёт внутри внешней транзакции:
+     *                       тогда пакет возвращается в буфер при её откате
+     */
+    private LemmaIds write(Batch batch, boolean newTransaction) {
+        List<Map.Entry<String, Integer>> deltas = new ArrayList<>(batch.deltas().entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_LEMMA, deltas, batchSize, (ps, delta) -> {
+            ps.setInt(1, batch.siteId());
+            ps.setString(2, delta.getKey());
+            ps.setInt(3, delta.getValue());
+        });
+        LemmaIds ids = findLemmaIds(batch.siteId(), batch.deltas());
+        jdbcTemplate.batchUpdate(INSERT_INDEX, batch.rows(), batchSize, (ps, row) -> {
+            ps.setInt(1, row.pageId());
+            ps.setInt(2, ids.ids().get(row.lemma()));
+            ps.setDouble(3, row.rank());
+            ps.setBytes(4, row.offsets());
+            ps.setBytes(5, row.positions());
+        });
+        jdbcTemplate.batchUpdate(UPDATE_PAGE_LENGTH, batch.pages(), batchSize, (ps, page) -> {
+            ps.setInt(1, page.length());
+            ps.setInt(2, page.pageId());
+        });
+        siteCounters.addIndexed(batch.siteId(), 0, ids.created(), batch.rows().size());
+        TransactionUtils.afterCommit(() -> publish(batch, ids));
+        if (!newTransaction) {
+            TransactionUtils.afterRollback(() -> requeue(batch));
+        }
+        return ids;
+    }
+
+    /**
+     * Возвращает незаписанный пакет в буфер, из которого он взят. Если буфер уже сброшен
+     * полной переиндексацией, пакет больше не нужен.
+     */
+    private void requeue(Batch batch) {
+        if (buffers.get(batch.siteId()) != batch.source()) {
+            return;
+        }
+        if (batch.source().requeue(batch)) {
+            logger.warn("Failed to flush {} index rows of site {}, they will be retried", batch.rows().size(), batch.siteId());
+        } else {
+            logger.error("Dropped {} index rows of site {} after {} failed flushes, the site needs reindexing",
+                    batch.rows().size(), batch.siteId(), MAX_ATTEMPTS);
+        }
+    }
+
+    /**
+     * Передаёт записанный пакет в структуры поиска в памяти. Вызывается после фиксации
+     * транзакции, в которой пакет записан: если буфер сбрасывается внутри внешней транзакции,
+     * например при удалении страницы, то после фиксации внешней.
+     */
+    private void publish(Batch batch, LemmaIds lemmaIds) {
+        batch.source().written();
+        batch.rows().forEach(row -> postingStore.add(lemmaIds.ids().get(row.lemma()), row.pageId(), (float) row.rank()));
+        batch.pages().forEach(page -> collectionStatistics.addPage(batch.siteId(), page.pageId(), page.length()));
+        suggestionIndex.add(batch.deltas());
+        indexEpochs.bump(batch.siteId());
+    }
+
+    /**
+     * Выбирает идентификаторы лемм пакета после upsert. Строки лемм заблокированы
+     * до конца транзакции, поэтому лемма, частота которой равна приращению пакета,
+     * была создана этим пакетом.
+     */
+    private LemmaIds findLemmaIds(int siteId, Map<String, Integer> deltas) {
+        Map<String, Integer> ids = new HashMap<>(deltas.size() * 2);
+        int[] created = new int[1];
+        List<String> list = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < list.size(); from += SELECT_CHUNK) {
+            Map<String, Object> params = Map.of(
+                    "siteId", siteId,
+                    "lemmas", list.subList(from, Math.min(from + SELECT_CHUNK, list.size())));
+            namedParameterJdbcTemplate.query(SELECT_LEMMA_IDS, params,
+                    rs -> {
+                        String lemma = rs.getString("lemma");
+                        ids.put(lemma, rs.getInt("id"));
+                        Integer delta = deltas.get(lemma);
+                        if (delta != null && rs.getInt("frequency") == delta) {
+                            created[0]++;
+                        }
+                    });
+        }
+        return new LemmaIds(ids, created[0]);
+    }
+
+    /**
+     * @param created число лемм, впервые появившихся на сайте
+     */
+    private record LemmaIds(Map<String, Integer> ids, int created) {
+    }
+
+    private record IndexRow(int pageId, String lemma, double rank, byte[] offsets, byte[] positions) {
+    }
+
+    private record PageLength(int pageId, int length) {
+    }
+
+    /**
+     * @param deltas приращения частот; упорядочены, чтобы параллельные сбросы
+     *               блокировали строки лемм в одном порядке
+     */
+    private record Batch(SiteBuffer source, int siteId, SortedMap<String, Integer> deltas, List<IndexRow> rows,
+                         List<PageLength> pages) {
+    }
+
+    private static class SiteBuffer {
+        private final int siteId;
+        private SortedMap<String, Integer> deltas = new TreeMap<>();
+        private List<IndexRow> rows = new ArrayList<>();
+        private List<PageLength> pages = new ArrayList<>();
+        private int failures;
+
+        SiteBuffer(int siteId) {
+            this.siteId = siteId;
+        }
+
+        synchronized Batch add(Integer pageId, Map<String, Occurrences> lemmas, int batchSize) {
+            int length = 0;
+            for (Map.Entry<String, Occurrences> entry : lemmas.entrySet()) {
+                Occurrences occurrences = entry.getValue();
+                deltas.merge(entry.getKey(), 1, Integer::sum);
+                rows.add(new IndexRow(pageId, entry.getKey(), occurrences.count(),
+                        PositionCodec.encode(occurrences.offsets()), PositionCodec.encode(occurrences.positions())));
+                length += occurrences.count();
+            }
+            pages.add(new PageLength(pageId, length));
+            return rows.size() >= batchSize ? drain() : null;
+        }
+
+        synchronized Batch drain() {
+            Batch batch = new Batch(this, siteId, deltas, rows, pages);
+            deltas = new TreeMap<>();
+            rows = new ArrayList<>();
+            pages = new ArrayList<>();
+            return batch;
+        }
+
+        /**
+         * @return false, если пакет не удалось записать {@value #MAX_ATTEMPTS} раза подряд и он отброшен
+         */
+        synchronized boolean requeue(Batch batch) {
+            if (++failures >= MAX_ATTEMPTS) {
+                failures = 0;
+                return false;
+            }
+            batch.deltas().forEach((lemma, delta) -> deltas.merge(lemma, delta, Integer::sum));
+            rows.addAll(batch.rows());
+            pages.addAll(batch.pages());
+            return true;
+        }
+
+        synchronized void written() {
+            failures = 0;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package searchengine.services;
+
+import searchengine.dto.metrics.MetricsResponse;
+
+public interface MetricsService {
+    MetricsResponse getMetrics();
+
+    String getPrometheusText();
+}
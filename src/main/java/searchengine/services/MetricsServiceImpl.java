@@ -0,0 +1,22 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.dto.metrics.MetricsResponse;
+import searchengine.metrics.MetricsRegistry;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsServiceImpl implements MetricsService {
+    private final MetricsRegistry metricsRegistry;
+
+    @Override
+    public MetricsResponse getMetrics() {
+        return new MetricsResponse(true, metricsRegistry.snapshot());
+    }
+
+    @Override
+    public String getPrometheusText() {
+        return metricsRegistry.toPrometheus();
+    }
+}
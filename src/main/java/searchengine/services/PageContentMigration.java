@@ -0,0 +1,134 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.crawler.ParsedPage;
+import searchengine.utility.ContentCodec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Переносит HTML и текст страниц, сохранённых до появления таблицы page_content,
+ * из столбцов page.content и page.text в сжатом виде, после чего удаляет эти столбцы.
+ * Столбца page.text в базах первых версий нет: тогда текст и заголовок
+ * страницы извлекаются из HTML так же, как при индексации.
+ * Перенос идёт порциями в фоновом потоке; пока он не закончен, сниппеты
+ * ещё не перенесённых страниц строятся по HTML из старого столбца.
+ * Когда перенос закончен или не нужен, публикуется {@link PageContentReadyEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentMigration {
+    private static final Logger logger = LoggerFactory.getLogger(PageContentMigration.class);
+    private static final String CONTENT = "content";
+    private static final String TEXT = "text";
+    private static final String SELECT_LEGACY_COLUMNS = "SELECT column_name FROM information_schema.columns " +
+            "WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name IN ('content', 'text')";
+    private static final String SELECT_LEGACY = "SELECT id, %s FROM page WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String INSERT_CONTENT = "INSERT IGNORE INTO page_content (page_id, content, text) VALUES (?, ?, ?)";
+    private static final String SELECT_LEGACY_CONTENT = "SELECT content FROM page WHERE id = ?";
+    private static final String UPDATE_TITLE = "UPDATE page SET title = ? WHERE id = ? AND title IS NULL";
+    private static final String DROP_LEGACY_COLUMNS = "ALTER TABLE page %s";
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private volatile boolean legacyContent;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Set<String> columns = jdbcTemplate.queryForList(SELECT_LEGACY_COLUMNS, String.class).stream()
+                .map(column -> column.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(HashSet::new));
+        if (columns.isEmpty()) {
+            eventPublisher.publishEvent(new PageContentReadyEvent());
+            return;
+        }
+        legacyContent = columns.contains(CONTENT);
+        Thread thread = new Thread(() -> migrate(columns), "page-content-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * HTML страницы, ещё не перенесённой в page_content.
+     *
+     * @return пусто, если старого столбца page.content нет или перенос уже закончен
+     */
+    public Optional<String> findLegacyContent(int pageId) {
+        if (!legacyContent) {
+            return Optional.empty();
+        }
+        try {
+            return jdbcTemplate.queryForList(SELECT_LEGACY_CONTENT, String.class, pageId).stream()
+                    .filter(Objects::nonNull)
+                    .findFirst();
+        } catch (DataAccessException e) {
+            // Столбец удалён между проверкой и запросом.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param columns имеющиеся старые столбцы page: content, text или оба
+     */
+    private void migrate(Set<String> columns) {
+        long start = System.currentTimeMillis();
+        boolean hasContent = columns.contains(CONTENT);
+        boolean hasText = columns.contains(TEXT);
+        String select = String.format(SELECT_LEGACY, columns.stream().sorted().collect(Collectors.joining(", ")));
+        try {
+            int lastId = 0;
+            int migrated = 0;
+            int parsed = 0;
+            while (true) {
+                List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+                List<Object[]> titles = new ArrayList<>();
+                jdbcTemplate.query(select, rs -> {
+                    int id = rs.getInt("id");
+                    String content = hasContent ? rs.getString(CONTENT) : null;
+                    String text = hasText ? rs.getString(TEXT) : null;
+                    if (text == null && content != null) {
+                        ParsedPage page = ParsedPage.of(Jsoup.parse(content));
+                        text = page.text();
+                        titles.add(new Object[]{page.title(), id});
+                    }
+                    rows.add(new Object[]{id, ContentCodec.compress(content), ContentCodec.compress(text)});
+                }, lastId, BATCH_SIZE);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                jdbcTemplate.batchUpdate(INSERT_CONTENT, rows);
+                jdbcTemplate.batchUpdate(UPDATE_TITLE, titles);
+                lastId = (int) rows.get(rows.size() - 1)[0];
+                migrated += rows.size();
+                parsed += titles.size();
+            }
+            jdbcTemplate.execute(String.format(DROP_LEGACY_COLUMNS, columns.stream().sorted()
+                    .map(column -> "DROP COLUMN " + column)
+                    .collect(Collectors.joining(", "))));
+            legacyContent = false;
+            logger.info("Moved bodies of {} pages to page_content in {} ms, text of {} extracted from HTML",
+                    migrated, System.currentTimeMillis() - start, parsed);
+        } catch (RuntimeException e) {
+            logger.error("Failed to move page bodies to page_content", e);
+        } finally {
+            eventPublisher.publishEvent(new PageContentReadyEvent());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package searchengine.services;
+
+/**
+ * Тексты страниц доступны в page_content: перенос {@link PageContentMigration}
+ * закончен или не понадобился.
+ */
+public record PageContentReadyEvent() {
+}
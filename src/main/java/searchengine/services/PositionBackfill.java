@@ -0,0 +1,106 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.search.IndexEpochs;
+import searchengine.utility.ContentCodec;
+import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+import searchengine.utility.PositionCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполняет index_table.positions (и offsets, если их тоже нет) у строк,
+ * проиндексированных до появления порядковых номеров слов. Номера вычисляются
+ * заново из сохранённого текста страницы той же лемматизацией, что и при индексации.
+ * Пока заполнение не закончено, фразы на таких страницах не проверяются.
+ * Страницы без сохранённого текста заполнить нельзя: их строки остаются без позиций
+ * и смещений, фразы на них не проверяются, сниппеты строятся по HTML,
+ * а в журнал пишется предупреждение о том, что нужна полная переиндексация.
+ * Так же остаются строки лемм, которых повторная лемматизация не нашла в тексте.
+ * Заполнение начинается после переноса текстов в page_content, см. {@link PageContentReadyEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+public class PositionBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(PositionBackfill.class);
+    private static final String HAS_MISSING = "SELECT page_id FROM index_table WHERE positions IS NULL LIMIT 1";
+    private static final String SELECT_PAGES = "SELECT DISTINCT page_id FROM index_table " +
+            "WHERE positions IS NULL AND page_id > ? ORDER BY page_id LIMIT ?";
+    private static final String SELECT_TEXT = "SELECT text FROM page_content WHERE page_id = ?";
+    private static final String SELECT_ROWS = "SELECT i.id, l.lemma FROM index_table i " +
+            "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ? AND i.positions IS NULL";
+    private static final String UPDATE_ROW = "UPDATE index_table SET positions = ?, offsets = COALESCE(offsets, ?) WHERE id = ?";
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LemmaUtils lemmaUtils;
+    private final IndexEpochs indexEpochs;
+
+    @EventListener(PageContentReadyEvent.class)
+    public void start() {
+        if (jdbcTemplate.queryForList(HAS_MISSING, Integer.class).isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread(this::backfill, "position-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void backfill() {
+        long start = System.currentTimeMillis();
+        try {
+            int lastId = 0;
+            int filled = 0;
+            int withoutText = 0;
+            while (true) {
+                List<Integer> pageIds = jdbcTemplate.queryForList(SELECT_PAGES, Integer.class, lastId, BATCH_SIZE);
+                if (pageIds.isEmpty()) {
+                    break;
+                }
+                for (Integer pageId : pageIds) {
+                    if (fill(pageId)) {
+                        filled++;
+                    } else {
+                        withoutText++;
+                    }
+                }
+                lastId = pageIds.get(pageIds.size() - 1);
+                indexEpochs.bumpAll();
+            }
+            logger.info("Token positions of {} pages restored in {} ms", filled, System.currentTimeMillis() - start);
+            if (withoutText > 0) {
+                logger.warn("{} pages have no stored text, quoted phrases and proximity ranking " +
+                        "will not work on them until the sites are fully reindexed", withoutText);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to restore token positions, phrases are not checked on old pages", e);
+        }
+    }
+
+    /**
+     * @return false, если у страницы нет сохранённого текста
+     */
+    private boolean fill(int pageId) {
+        List<byte[]> texts = jdbcTemplate.queryForList(SELECT_TEXT, byte[].class, pageId);
+        String text = texts.isEmpty() || texts.get(0) == null ? null : ContentCodec.decompress(texts.get(0));
+        Map<String, Occurrences> lemmas = text == null ? Map.of() : lemmaUtils.collectLemmaOccurrences(text);
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query(SELECT_ROWS, rs -> {
+            Occurrences occurrences = lemmas.get(rs.getString("lemma"));
+            if (occurrences != null) {
+                updates.add(new Object[]{PositionCodec.encode(occurrences.positions()),
+                        PositionCodec.encode(occurrences.offsets()), rs.getInt("id")});
+            }
+        }, pageId);
+        jdbcTemplate.batchUpdate(UPDATE_ROW, updates);
+        return text != null;
+    }
+}
@@ -0,0 +1,75 @@
+package searchengine.services;
+
+import searchengine.dto.index.SearchResultDto;
+import searchengine.dto.index.SearchSnippetData;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Результат потокового поиска: список найденных страниц, который можно
+ * отправить сразу, и сниппеты, которые строятся уже во время записи ответа.
+ * Поток закрывается после записи ответа.
+ */
+public class SearchStream implements AutoCloseable {
+    private final SearchResultDto head;
+    private final SnippetSource snippets;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private Runnable closeHandler = () -> {
+    };
+
+    SearchStream(SearchResultDto head, SnippetSource snippets) {
+        this.head = head;
+        this.snippets = snippets;
+    }
+
+    /**
+     * Ответ без отложенных сниппетов: ошибка или результат из кеша, где сниппеты уже есть.
+     */
+    static SearchStream of(SearchResultDto response) {
+        return new SearchStream(response, consumer -> {
+        });
+    }
+
+    /**
+     * @return ответ поиска; у найденных страниц нет заголовков и сниппетов, если они строятся потоком
+     */
+    public SearchResultDto getHead() {
+        return head;
+    }
+
+    /**
+     * Передаёт сниппеты в consumer по мере построения, возможно из разных потоков,
+     * и возвращает управление, когда построены все.
+     */
+    public void forEachSnippet(Consumer<SearchSnippetData> consumer) throws InterruptedException {
+        snippets.forEach(consumer);
+    }
+
+    /**
+     * Добавляет действие, которое выполнится при закрытии потока.
+     */
+    SearchStream onClose(Runnable handler) {
+        Runnable previous = closeHandler;
+        closeHandler = () -> {
+            previous.run();
+            handler.run();
+        };
+        return this;
+    }
+
+    /**
+     * Завершает ответ. Повторные вызовы ничего не делают.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            closeHandler.run();
+        }
+    }
+
+    @FunctionalInterface
+    interface SnippetSource {
+        void forEach(Consumer<SearchSnippetData> consumer) throws InterruptedException;
+    }
+}
@@ -0,0 +1,165 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.utility.TransactionUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики сайтов для статистики: страницы, леммы, строки индекса,
+ * загруженные байты и ошибки. Индексатор меняет их вместе с данными,
+ * поэтому статистика читается из памяти за O(число сайтов) без запросов к страницам и леммам.
+ * <p>
+ * Значения раз в statistics-settings.flush-interval и при остановке записываются
+ * в таблицу site_counter, а при старте загружаются из неё. Если для сайта
+ * сохранённых значений нет (база создана до появления счётчиков),
+ * страницы, леммы и строки индекса один раз пересчитываются запросами.
+ */
+@Component
+@RequiredArgsConstructor
+public class SiteCounters {
+    private static final Logger logger = LoggerFactory.getLogger(SiteCounters.class);
+    private static final String SELECT_COUNTERS = "SELECT site_id, pages, lemmas, index_rows, bytes_fetched, errors FROM site_counter";
+    private static final String UPSERT_COUNTERS = "INSERT INTO site_counter (site_id, pages, lemmas, index_rows, bytes_fetched, errors) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE pages = VALUES(pages), lemmas = VALUES(lemmas), " +
+            "index_rows = VALUES(index_rows), bytes_fetched = VALUES(bytes_fetched), errors = VALUES(errors)";
+    private static final String DELETE_COUNTERS = "DELETE FROM site_counter";
+    private static final String SELECT_SITE_IDS = "SELECT id FROM site";
+    private static final String COUNT_PAGES = "SELECT COUNT(*) FROM page WHERE site_id = ?";
+    private static final String COUNT_LEMMAS = "SELECT COUNT(*) FROM lemma WHERE site_id = ?";
+    private static final String COUNT_INDEX_ROWS = "SELECT COUNT(*) FROM index_table i JOIN page p ON p.id = i.page_id WHERE p.site_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Counters> sites = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        Set<Integer> loaded = new HashSet<>();
+        jdbcTemplate.query(SELECT_COUNTERS, rs -> {
+            Counters counters = counters(rs.getInt("site_id"));
+            counters.pages.add(rs.getLong("pages"));
+            counters.lemmas.add(rs.getLong("lemmas"));
+            counters.indexRows.add(rs.getLong("index_rows"));
+            counters.bytesFetched.add(rs.getLong("bytes_fetched"));
+            counters.errors.add(rs.getLong("errors"));
+            loaded.add(rs.getInt("site_id"));
+        });
+        for (Integer siteId : jdbcTemplate.queryForList(SELECT_SITE_IDS, Integer.class)) {
+            if (!loaded.contains(siteId)) {
+                rebuild(siteId);
+            }
+        }
+        logger.info("Site counters of {} sites loaded in {} ms", sites.size(), System.currentTimeMillis() - start);
+    }
+
+    private void rebuild(int siteId) {
+        Counters counters = counters(siteId);
+        counters.pages.add(count(COUNT_PAGES, siteId));
+        counters.lemmas.add(count(COUNT_LEMMAS, siteId));
+        counters.indexRows.add(count(COUNT_INDEX_ROWS, siteId));
+        counters.dirty = true;
+    }
+
+    private long count(String sql, int siteId) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, siteId);
+        return count == null ? 0 : count;
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${statistics-settings.flush-interval:10000}")
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        sites.forEach((siteId, counters) -> {
+            if (counters.dirty) {
+                counters.dirty = false;
+                Snapshot snapshot = counters.snapshot();
+                rows.add(new Object[]{siteId, snapshot.pages(), snapshot.lemmas(), snapshot.indexRows(),
+                        snapshot.bytesFetched(), snapshot.errors()});
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_COUNTERS, rows);
+        } catch (RuntimeException e) {
+            rows.forEach(row -> counters((Integer) row[0]).dirty = true);
+            logger.error("Failed to save site counters | {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает счётчики всех сайтов перед полной переиндексацией.
+     */
+    public void clear() {
+        sites.clear();
+        jdbcTemplate.update(DELETE_COUNTERS);
+    }
+
+    public Snapshot get(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? Snapshot.EMPTY : counters.snapshot();
+    }
+
+    /**
+     * Изменяет счётчики страниц, лемм и строк индекса после фиксации текущей транзакции,
+     * чтобы откаченные изменения не попали в статистику. Вне транзакции изменяет сразу.
+     */
+    public void addIndexed(int siteId, long pages, long lemmas, long indexRows) {
+        TransactionUtils.afterCommit(() -> {
+            Counters counters = counters(siteId);
+            counters.pages.add(pages);
+            counters.lemmas.add(lemmas);
+            counters.indexRows.add(indexRows);
+            counters.dirty = true;
+        });
+    }
+
+    public void addFetched(int siteId, long bytes) {
+        Counters counters = counters(siteId);
+        counters.bytesFetched.add(bytes);
+        counters.dirty = true;
+    }
+
+    public void addError(int siteId) {
+        Counters counters = counters(siteId);
+        counters.errors.increment();
+        counters.dirty = true;
+    }
+
+    private Counters counters(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new Counters());
+    }
+
+    public record Snapshot(long pages, long lemmas, long indexRows, long bytesFetched, long errors) {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0);
+    }
+
+    private static class Counters {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder lemmas = new LongAdder();
+        private final LongAdder indexRows = new LongAdder();
+        private final LongAdder bytesFetched = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private volatile boolean dirty;
+
+        Snapshot snapshot() {
+            return new Snapshot(pages.sum(), lemmas.sum(), indexRows.sum(), bytesFetched.sum(), errors.sum());
+        }
+    }
+}
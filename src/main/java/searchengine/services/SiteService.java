@@ -1,21 +1,39 @@
 package searchengine.services;
 
+import searchengine.crawler.FetchResult;
+import searchengine.crawler.ParsedPage;
 import searchengine.model.Page;
 import searchengine.model.Site;
+import searchengine.repository.projection.PageState;
+import searchengine.utility.Occurrences;
 
-import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface SiteService {
     void deletePage(Site site, String path);
 
+    void deletePages(Site site, Collection<String> paths);
+
     List<Site> deleteAllAndSaveSites();
 
-    void processPageContent(Page page, Site site, String content) throws IOException;
+    List<Site> prepareSites(boolean incremental);
+
+    Map<String, PageState> findPageStates(Site site);
+
+    Optional<String> findPageContent(Integer pageId);
+
+    void processPageContent(Page page, Site site, String text);
+
+    void indexLemmas(Page page, Site site, Map<String, Occurrences> lemmas);
 
     Site findAndSaveSite(searchengine.config.Site s);
 
-    Page createPage(Site site, String path, String content, int statusCode);
+    Page createPage(Site site, String path, ParsedPage parsed, FetchResult response);
+
+    void touchPage(Integer pageId, FetchResult response);
 
     void updateSite(Site site);
 }
@@ -5,23 +5,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import searchengine.config.SitesList;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
+import searchengine.crawler.FetchResult;
+import searchengine.crawler.ParsedPage;
+import searchengine.metrics.IndexingMetrics;
 import searchengine.model.Page;
+import searchengine.model.PageContent;
 import searchengine.model.Site;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageContentRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.repository.projection.PageState;
+import searchengine.search.CollectionStatistics;
+import searchengine.search.IndexEpochs;
+import searchengine.search.PostingStore;
+import searchengine.search.SuggestionIndex;
 import searchengine.shared.SiteStatus;
+import searchengine.utility.ContentCodec;
 import searchengine.utility.LemmaUtils;
+import searchengine.utility.Occurrences;
+import searchengine.utility.TransactionUtils;
 
 import javax.transaction.Transactional;
-import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -29,12 +37,23 @@ import java.util.concurrent.Executors;
 @RequiredArgsConstructor
 public class SiteServiceImpl implements SiteService {
     private static final Logger logger = LoggerFactory.getLogger(SiteServiceImpl.class);
+    private static final int DELETE_CHUNK = 1000;
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final LemmaUtils lemmaUtils;
+    private final IndexingBuffer indexingBuffer;
+    private final PostingStore postingStore;
+    private final IndexEpochs indexEpochs;
+    private final CollectionStatistics collectionStatistics;
+    private final SuggestionIndex suggestionIndex;
+    private final SiteCounters siteCounters;
+    private final IndexingMetrics metrics;
+    private final PageContentMigration pageContentMigration;
 
     @Transactional
     @Override
@@ -46,13 +65,51 @@ public class SiteServiceImpl implements SiteService {
 
     @Transactional
     @Override
-    public Page createPage(Site site, String path, String content, int statusCode) {
+    public Page createPage(Site site, String path, ParsedPage parsed, FetchResult response) {
+        long start = System.nanoTime();
         Page page = new Page();
         page.setSite(site);
-        page.setContent(content);
-        page.setCode(statusCode);
+        page.setTitle(parsed.title());
+        page.setCode(response.getStatusCode());
         page.setPath(path);
-        return pageRepository.save(page);
+        page.setEtag(response.getEtag());
+        page.setLastModified(response.getLastModified());
+        page.setContentHash(response.contentHash());
+        Page saved = pageRepository.save(page);
+        PageContent content = new PageContent();
+        content.setPageId(saved.getId());
+        content.setContent(ContentCodec.compress(parsed.content()));
+        content.setText(ContentCodec.compress(parsed.text()));
+        pageContentRepository.save(content);
+        siteCounters.addIndexed(site.getId(), 1, 0, 0);
+        metrics.getPageSave().recordSince(start);
+        return saved;
+    }
+
+    @Transactional
+    @Override
+    public void touchPage(Integer pageId, FetchResult response) {
+        pageRepository.findById(pageId).ifPresent(page -> {
+            if (Objects.equals(page.getEtag(), response.getEtag()) && Objects.equals(page.getLastModified(), response.getLastModified())) {
+                return;
+            }
+            page.setEtag(response.getEtag());
+            page.setLastModified(response.getLastModified());
+            pageRepository.save(page);
+        });
+    }
+
+    @Override
+    public Map<String, PageState> findPageStates(Site site) {
+        Map<String, PageState> states = new HashMap<>();
+        pageRepository.findStatesBySite(site).forEach(i -> states.put(i.getPath(), i));
+        return states;
+    }
+
+    @Override
+    public Optional<String> findPageContent(Integer pageId) {
+        return pageContentRepository.findContentByPageId(pageId).map(ContentCodec::decompress)
+                .or(() -> pageContentMigration.findLegacyContent(pageId));
     }
 
 
@@ -70,55 +127,140 @@ public class SiteServiceImpl implements SiteService {
     }
 
 
-    @Transactional
     @Override
-    public void processPageContent(Page page, Site site, String content) throws IOException {
-        Map<String, Integer> lemmaMap = LemmaUtils.getInstance().collectLemmas(content);
-        List<Lemma> byLemmaInAndSite = lemmaRepository.findByLemmaInAndSite(lemmaMap.keySet().stream().toList(), site);
-        List<Lemma> listLemma = new ArrayList<>(byLemmaInAndSite.stream().peek(i -> i.setFrequency(i.getFrequency() + 1)).toList());
-        List<String> list = byLemmaInAndSite.stream().map(i -> i.getLemma()).toList();
-        listLemma.addAll(lemmaMap.keySet().stream().filter(i -> !list.contains(i)).map(i -> createLemma(site, i)).toList());
-        lemmaRepository.saveAll(listLemma);
-        List<Index> listIndex = listLemma.stream().map(i -> createIndex(page, i, Double.valueOf(lemmaMap.get(i.getLemma())))).toList();
-        indexRepository.saveAll(listIndex);
+    public void processPageContent(Page page, Site site, String text) {
+        indexLemmas(page, site, lemmaUtils.collectLemmaOccurrences(text));
+    }
+
+    @Override
+    public void indexLemmas(Page page, Site site, Map<String, Occurrences> lemmas) {
+        metrics.getLemmas().add(lemmas.size());
+        indexingBuffer.add(site, page.getId(), lemmas);
     }
 
     @Transactional
     @Override
     public List<Site> deleteAllAndSaveSites() {
-        indexRepository.deleteAll();
-        lemmaRepository.deleteAll();
-        pageRepository.deleteAll();
-        siteRepository.deleteAll();
+        indexingBuffer.clear();
+        siteCounters.clear();
+        TransactionUtils.afterCommit(() -> {
+            postingStore.clear();
+            collectionStatistics.clear();
+            suggestionIndex.clear();
+            indexEpochs.bumpAll();
+        });
+        indexRepository.deleteAllInBatch();
+        lemmaRepository.deleteAllInBatch();
+        pageContentRepository.deleteAllInBatch();
+        pageRepository.deleteAllInBatch();
+        siteRepository.deleteAllInBatch();
         List<Site> list = sitesList.getSites().stream().map(this::createSite).toList();
         return siteRepository.saveAll(list);
     }
 
+    /**
+     * Готовит сайты к обходу. В инкрементальном режиме сохранённые страницы
+     * не удаляются: обходчик сам пропустит неизменившиеся и удалит исчезнувшие.
+     */
+    @Transactional
+    @Override
+    public List<Site> prepareSites(boolean incremental) {
+        if (!incremental) {
+            return deleteAllAndSaveSites();
+        }
+        List<Site> list = sitesList.getSites().stream().map(s -> {
+            Site site = siteRepository.findByName(s.getName()).orElseGet(() -> createSite(s));
+            site.setUrl(s.getUrl());
+            site.setStatus(SiteStatus.INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            site.setError(null);
+            return site;
+        }).toList();
+        return siteRepository.saveAll(list);
+    }
+
+    /**
+     * Страница убирается из хранилища вхождений и статистики, а версия индекса сайта
+     * увеличивается только после фиксации транзакции: при откате страница остаётся в поиске,
+     * а параллельный поиск не может закешировать ещё не удалённые строки под новой версией.
+     * Частоты лемм уменьшаются одним UPDATE в базе, а не через загруженные сущности,
+     * чтобы не затереть приращения, которые параллельно записывает {@link IndexingBuffer}.
+     * Удаляются только леммы страницы, частота которых упала до нуля, а не все неиспользуемые леммы сайта.
+     */
     @Transactional
     @Override
     public void deletePage(Site site, String path) {
-        Page page = pageRepository.findBySiteAndPath(site, path).orElse(null);
-
-        if (page != null) {
-            List<Index> indices = indexRepository.findByPage(page);
-            indexRepository.deleteAll(indices);
-            List<Lemma> lemmaArrayList = new ArrayList<>();
-            List<Lemma> lemmaDeleteArrayList = new ArrayList<>();
-            for (Index index : indices) {
-                Lemma lemma = index.getLemma();
-                lemma.setFrequency(lemma.getFrequency() - 1);
-
-                if (lemma.getFrequency() <= 0) {
-                    lemmaDeleteArrayList.add(lemma);
-                } else {
-                    lemmaArrayList.add(lemma);
-                }
-            }
-            if (!lemmaDeleteArrayList.isEmpty()) lemmaRepository.deleteAll(lemmaDeleteArrayList);
-            if (!lemmaArrayList.isEmpty()) lemmaRepository.saveAll(lemmaArrayList);
-            pageRepository.delete(page);
-            logger.info("Page with ID {} deleted successfully.", page.getId());
+        pageRepository.findBySiteAndPath(site, path).ifPresent(page -> {
+            indexingBuffer.flush(site);
+            RemovedPage removed = remove(page);
+            int lemmas = deleteUnusedLemmas(removed.lemmaIds());
+            siteCounters.addIndexed(site.getId(), -1, -lemmas, -removed.indexRows());
+            publishRemoved(site, List.of(removed));
+        });
+    }
+
+    /**
+     * Удаляет страницы одной транзакцией: буфер сбрасывается и неиспользуемые леммы
+     * удаляются один раз на весь набор, а изменения в памяти публикуются одним действием после фиксации.
+     */
+    @Transactional
+    @Override
+    public void deletePages(Site site, Collection<String> paths) {
+        indexingBuffer.flush(site);
+        List<RemovedPage> removed = new ArrayList<>();
+        for (String path : paths) {
+            pageRepository.findBySiteAndPath(site, path).ifPresent(page -> removed.add(remove(page)));
         }
+        if (removed.isEmpty()) {
+            return;
+        }
+        Set<Integer> lemmaIds = new HashSet<>();
+        removed.forEach(page -> lemmaIds.addAll(page.lemmaIds()));
+        int lemmas = deleteUnusedLemmas(lemmaIds);
+        siteCounters.addIndexed(site.getId(), -removed.size(), -lemmas,
+                -removed.stream().mapToInt(RemovedPage::indexRows).sum());
+        publishRemoved(site, removed);
+        logger.info("{} disappeared pages of {} deleted.", removed.size(), site.getUrl());
+    }
+
+    private RemovedPage remove(Page page) {
+        long start = System.nanoTime();
+        int pageId = page.getId();
+        List<Integer> lemmaIds = indexRepository.findLemmaIdsByPageId(pageId);
+        lemmaRepository.decrementFrequencyByPage(pageId);
+        int indexRows = indexRepository.deleteByPageId(pageId);
+        pageContentRepository.deleteByPageId(pageId);
+        pageRepository.delete(page);
+        metrics.getPageDelete().recordSince(start);
+        logger.info("Page with ID {} deleted successfully.", pageId);
+        return new RemovedPage(pageId, lemmaIds, indexRows);
+    }
+
+    /**
+     * Удаляет леммы из переданных, которые больше не встречаются ни на одной странице сайта.
+     *
+     * @return число удалённых лемм
+     */
+    private int deleteUnusedLemmas(Collection<Integer> lemmaIds) {
+        List<Integer> ids = new ArrayList<>(lemmaIds);
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+            deleted += lemmaRepository.deleteUnusedByIdIn(ids.subList(from, Math.min(from + DELETE_CHUNK, ids.size())));
+        }
+        return deleted;
+    }
+
+    private void publishRemoved(Site site, List<RemovedPage> removed) {
+        TransactionUtils.afterCommit(() -> {
+            for (RemovedPage page : removed) {
+                postingStore.removePage(page.pageId(), page.lemmaIds());
+                collectionStatistics.removePage(site.getId(), page.pageId());
+            }
+            indexEpochs.bump(site.getId());
+        });
+    }
+
+    private record RemovedPage(int pageId, List<Integer> lemmaIds, int indexRows) {
     }
 
     private Site createSite(searchengine.config.Site configSite) {
@@ -129,20 +271,4 @@ public class SiteServiceImpl implements SiteService {
         site.setStatusTime(LocalDateTime.now());
         return site;
     }
-
-    private Lemma createLemma(Site site, String text) {
-        Lemma lemma = new Lemma();
-        lemma.setLemma(text);
-        lemma.setSite(site);
-        lemma.setFrequency(1);
-        return lemma;
-    }
-
-    private Index createIndex(Page page, Lemma lemma, Double rank) {
-        Index index = new Index();
-        index.setPage(page);
-        index.setLemma(lemma);
-        index.setRank(rank);
-        return index;
-    }
 }
@@ -9,10 +9,6 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.shared.SiteStatus;
 
@@ -27,8 +23,7 @@ public class StatisticsServiceImpl implements StatisticsService {
 
     private final SitesList sites;
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteCounters siteCounters;
 
     @Override
     public StatisticsResponse getStatistics() {
@@ -51,13 +46,15 @@ public class StatisticsServiceImpl implements StatisticsService {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(siteModel.getName());
             item.setUrl(siteModel.getUrl());
-            List<Page> bySite = pageRepository.findBySite(siteModel);
-            int pages = pageRepository.findBySite(siteModel).size();
-            List<Lemma> bySite1 = lemmaRepository.findBySite(siteModel);
-            int lemmas = pages * bySite1.size();
+            SiteCounters.Snapshot counters = siteCounters.get(siteModel.getId());
+            int pages = (int) counters.pages();
+            int lemmas = (int) counters.lemmas();
 
             item.setPages(pages);
             item.setLemmas(lemmas);
+            item.setIndexRows(counters.indexRows());
+            item.setBytesFetched(counters.bytesFetched());
+            item.setErrors(counters.errors());
             item.setStatus(siteModel.getStatus().toString());
             item.setError(siteModel.getError());
             item.setStatusTime(siteModel.getStatusTime().toEpochSecond(ZoneOffset.UTC));
@@ -0,0 +1,7 @@
+package searchengine.services;
+
+import searchengine.dto.suggest.SuggestResponse;
+
+public interface SuggestService {
+    SuggestResponse suggest(String query, Integer limit);
+}
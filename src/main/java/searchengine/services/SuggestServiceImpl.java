@@ -0,0 +1,42 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.suggest.SuggestResponse;
+import searchengine.dto.suggest.SuggestionData;
+import searchengine.search.SuggestionIndex;
+import searchengine.utility.Tokenizer;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class SuggestServiceImpl implements SuggestService {
+    private final SearchSettings searchSettings;
+    private final SuggestionIndex suggestionIndex;
+
+    /**
+     * Дополняет последнее слово запроса. Если запрос заканчивается не буквой,
+     * слово считается законченным и подсказок нет.
+     */
+    @Override
+    public SuggestResponse suggest(String query, Integer limit) {
+        int[] lastWord = {-1, -1};
+        String[] prefix = {null};
+        Tokenizer.tokenize(query, (token, start, end) -> {
+            prefix[0] = token;
+            lastWord[0] = start;
+            lastWord[1] = end;
+        });
+        if (prefix[0] == null || lastWord[1] != query.length()) {
+            return new SuggestResponse(true, null, List.of());
+        }
+        int count = Math.min(Math.max(limit, 1), searchSettings.getSuggestMaxLimit());
+        String head = query.substring(0, lastWord[0]);
+        List<SuggestionData> data = suggestionIndex.suggest(prefix[0], count).stream()
+                .map(i -> new SuggestionData(head + i.lemma(), i.lemma(), i.frequency()))
+                .toList();
+        return new SuggestResponse(true, null, data);
+    }
+}
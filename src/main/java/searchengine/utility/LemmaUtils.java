@@ -2,24 +2,46 @@ package searchengine.utility;
 
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import searchengine.metrics.Counter;
+import searchengine.metrics.Timer;
 
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Лемматизатор текста. Экземпляр потокобезопасен и должен быть единственным
+ * на приложение: создание {@link RussianLuceneMorphology} загружает весь словарь.
+ * Результаты разбора слов хранятся в ограниченном LRU-кеше.
+ * Время разбора страниц и объём разобранного текста учитываются в переданных метриках.
+ */
 public class LemmaUtils {
 
     private final LuceneMorphology luceneMorphology;
+    private final LruCache<String, WordInfo> cache;
+    private final Timer analysisTimer;
+    private final Counter analyzedBytes;
     private static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
 
 
-    public static LemmaUtils getInstance() throws IOException {
-        LuceneMorphology morphology= new RussianLuceneMorphology();
-        return new LemmaUtils(morphology);
+    public static LemmaUtils create(int cacheSize) throws IOException {
+        return create(cacheSize, new Timer(), new Counter());
     }
 
-    private LemmaUtils(LuceneMorphology luceneMorphology) {
+    /**
+     * @param analysisTimer время разбора страниц в {@link #collectLemmaOccurrences(String)}
+     * @param analyzedBytes размер разобранного текста страниц в байтах UTF-8
+     */
+    public static LemmaUtils create(int cacheSize, Timer analysisTimer, Counter analyzedBytes) throws IOException {
+        LuceneMorphology morphology = new RussianLuceneMorphology();
+        return new LemmaUtils(morphology, cacheSize, analysisTimer, analyzedBytes);
+    }
+
+    private LemmaUtils(LuceneMorphology luceneMorphology, int cacheSize, Timer analysisTimer, Counter analyzedBytes) {
         this.luceneMorphology = luceneMorphology;
+        this.cache = new LruCache<>(cacheSize);
+        this.analysisTimer = analysisTimer;
+        this.analyzedBytes = analyzedBytes;
     }
 
     private LemmaUtils(){
@@ -27,87 +49,111 @@ public class LemmaUtils {
     }
 
     /**
-     * Метод разделяет текст на слова, находит все леммы и считает их количество.
+     * Метод разделяет текст на слова, находит все леммы и вхождения их словоформ в текст.
+     * Количество найденных лемм равно числу вхождений.
      *
      * @param text текст из которого будут выбираться леммы
-     * @return ключ является леммой, а значение количеством найденных лемм
+     * @return ключ является леммой, а значение позициями её словоформ в тексте
      */
-    public Map<String, Integer> collectLemmas(String text) {
-        String[] words = arrayContainsRussianWords(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
-
-        for (String word : words) {
-            if (word.isBlank()) {
-                continue;
-            }
-
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
-
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
+    public Map<String, Occurrences> collectLemmaOccurrences(String text) {
+        long startTime = System.nanoTime();
+        Map<String, Positions> words = new HashMap<>();
+        int[] ordinal = new int[1];
+        Tokenizer.tokenize(text, (token, start, end) -> words.computeIfAbsent(token, k -> new Positions()).add(start, ordinal[0]++));
+        Map<String, Positions> lemmas = new HashMap<>();
+        words.forEach((word, positions) -> {
+            WordInfo info = analyze(word);
+            if (!info.particle() && !info.normalForms().isEmpty()) {
+                lemmas.merge(info.normalForms().get(0), positions, Positions::addAll);
             }
+        });
+        Map<String, Occurrences> result = new HashMap<>(lemmas.size() * 2);
+        lemmas.forEach((lemma, positions) -> result.put(lemma, positions.toOccurrences()));
+        analyzedBytes.add(utf8Length(text));
+        analysisTimer.recordSince(startTime);
+        return result;
+    }
 
-            String normalWord = normalForms.get(0);
 
-            if (lemmas.containsKey(normalWord)) {
-                lemmas.put(normalWord, lemmas.get(normalWord) + 1);
-            } else {
-                lemmas.put(normalWord, 1);
+    /**
+     * @param text текст из которого собираем все леммы
+     * @return набор уникальных лемм найденных в тексте
+     */
+    public Set<String> getLemmaSet(String text) {
+        Set<String> lemmaSet = new HashSet<>();
+        for (String word : distinctWords(text)) {
+            WordInfo info = analyze(word);
+            if (info.correctForm() && !info.particle()) {
+                lemmaSet.addAll(info.normalForms());
             }
         }
-
-        return lemmas;
+        return lemmaSet;
     }
 
+    /**
+     * Леммы слов текста в порядке следования, так же как их нумерует
+     * {@link #collectLemmaOccurrences(String)}: номер элемента равен номеру слова.
+     *
+     * @return лемма каждого слова или null для служебных и неизвестных слов
+     */
+    public List<String> lemmaSequence(String text) {
+        List<String> sequence = new ArrayList<>();
+        Tokenizer.tokenize(text, (token, start, end) -> {
+            WordInfo info = analyze(token);
+            sequence.add(info.particle() || info.normalForms().isEmpty() ? null : info.normalForms().get(0));
+        });
+        return sequence;
+    }
 
-    public HashMap<String, String> wordsToLemmas(String text) {
-        String[] words = arrayContainsRussianWords(text);
-        HashMap<String, String> lemmas = new HashMap<>();
-
-        for (String word : words) {
-            if (word.isBlank()) {
-                continue;
-            }
-
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
-
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
-            }
-
-            String normalWord = normalForms.get(0);
-            if (!lemmas.containsKey(normalWord)) {
-                lemmas.put(normalWord, word);
-            }
+    /**
+     * Скорость лемматизации страниц в {@link #collectLemmaOccurrences(String)}
+     * с момента запуска приложения, в мегабайтах (10^6 байт) текста в UTF-8 в секунду.
+     */
+    public double getThroughputMbPerSecond() {
+        long nanos = analysisTimer.sumNanos();
+        if (nanos == 0) {
+            return 0;
         }
-
-        return lemmas;
+        return analyzedBytes.sum() / 1_000_000.0 / (nanos / 1_000_000_000.0);
     }
+
     /**
-     * @param text текст из которого собираем все леммы
-     * @return набор уникальных лемм найденных в тексте
+     * Размер текста в UTF-8 без кодирования строки.
      */
-    public Set<String> getLemmaSet(String text) {
-        String[] textArray = arrayContainsRussianWords(text);
-        Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-                if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                    continue;
-                }
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
             }
         }
-        return lemmaSet;
+        return length;
+    }
+
+    private Set<String> distinctWords(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        Tokenizer.tokenize(text, (token, start, end) -> words.add(token));
+        return words;
+    }
+
+    private WordInfo analyze(String word) {
+        return cache.computeIfAbsent(word, this::lookup);
+    }
+
+    private WordInfo lookup(String word) {
+        List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+        if (anyWordBaseBelongToParticle(wordBaseForms)) {
+            return new WordInfo(List.of(), true, isCorrectWordForm(wordBaseForms));
+        }
+        return new WordInfo(List.copyOf(luceneMorphology.getNormalForms(word)), false, isCorrectWordForm(wordBaseForms));
     }
 
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
@@ -116,23 +162,14 @@ public class LemmaUtils {
 
     private boolean hasParticleProperty(String wordBase) {
         for (String property : particlesNames) {
-            if (wordBase.toUpperCase().contains(property)) {
+            if (wordBase.contains(property)) {
                 return true;
             }
         }
         return false;
     }
 
-    private String[] arrayContainsRussianWords(String text) {
-        return text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-я\\s])", " ")
-                .trim()
-                .split("\\s+");
-    }
-
-
-    private boolean isCorrectWordForm(String word) {
-        List<String> wordInfo = luceneMorphology.getMorphInfo(word);
+    private boolean isCorrectWordForm(List<String> wordInfo) {
         for (String morphInfo : wordInfo) {
             if (morphInfo.matches(WORD_TYPE_REGEX)) {
                 return false;
@@ -140,4 +177,56 @@ public class LemmaUtils {
         }
         return true;
     }
+
+    /**
+     * Закешированный результат разбора словоформы.
+     *
+     * @param normalForms нормальные формы; пустой список для служебных частей речи
+     * @param particle    словоформа относится к междометиям, предлогам или союзам
+     * @param correctForm словоформа проходит проверку {@link #WORD_TYPE_REGEX}
+     */
+    private record WordInfo(List<String> normalForms, boolean particle, boolean correctForm) {
+    }
+
+    /**
+     * Растущие массивы позиций словоформ одной леммы. Индексы символов и номера слов
+     * возрастают вместе, поэтому после слияния словоформ массивы сортируются независимо.
+     */
+    private static final class Positions {
+        private int[] offsets = new int[2];
+        private int[] ordinals = new int[2];
+        private int size;
+        private boolean merged;
+
+        void add(int offset, int ordinal) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            offsets[size] = offset;
+            ordinals[size++] = ordinal;
+        }
+
+        Positions addAll(Positions other) {
+            if (size + other.size > offsets.length) {
+                offsets = Arrays.copyOf(offsets, size + other.size);
+                ordinals = Arrays.copyOf(ordinals, size + other.size);
+            }
+            System.arraycopy(other.offsets, 0, offsets, size, other.size);
+            System.arraycopy(other.ordinals, 0, ordinals, size, other.size);
+            size += other.size;
+            merged = true;
+            return this;
+        }
+
+        Occurrences toOccurrences() {
+            int[] sortedOffsets = Arrays.copyOf(offsets, size);
+            int[] sortedOrdinals = Arrays.copyOf(ordinals, size);
+            if (merged) {
+                Arrays.sort(sortedOffsets);
+                Arrays.sort(sortedOrdinals);
+            }
+            return new Occurrences(sortedOffsets, sortedOrdinals);
+        }
+    }
 }
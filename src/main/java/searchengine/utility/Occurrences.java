@@ -0,0 +1,14 @@
+package searchengine.utility;
+
+/**
+ * Вхождения леммы в текст страницы. Массивы одной длины и возрастают вместе:
+ * i-я словоформа начинается с символа offsets[i] и является positions[i]-м словом текста.
+ *
+ * @param offsets индексы первых символов словоформ, по ним строятся сниппеты
+ * @param positions порядковые номера словоформ среди всех слов текста, по ним проверяются фразы
+ */
+public record Occurrences(int[] offsets, int[] positions) {
+    public int count() {
+        return offsets.length;
+    }
+}
@@ -0,0 +1,64 @@
+package searchengine.utility;
+
+import java.util.Arrays;
+
+/**
+ * Компактная запись возрастающих позиций: хранится разность с предыдущей
+ * позицией в формате varint, по 7 бит на байт, старший бит означает продолжение.
+ * Позиции в начале страницы занимают один-два байта.
+ */
+public class PositionCodec {
+    private static final byte[] EMPTY = new byte[0];
+
+    private PositionCodec() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    public static byte[] encode(int[] positions) {
+        if (positions.length == 0) {
+            return EMPTY;
+        }
+        byte[] buffer = new byte[positions.length * 5];
+        int size = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            while ((delta & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[size++] = (byte) delta;
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * @throws IllegalArgumentException если позиции не сохранены (строка индекса старого формата)
+     */
+    public static int[] decode(byte[] encoded) {
+        if (encoded == null) {
+            throw new IllegalArgumentException("Positions are not stored");
+        }
+        if (encoded.length == 0) {
+            return new int[0];
+        }
+        int[] positions = new int[encoded.length];
+        int count = 0;
+        int previous = 0;
+        int i = 0;
+        while (i < encoded.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && i < encoded.length);
+            previous += delta;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.utility;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный разбор текста на русские слова. Символы просматриваются один раз,
+ * слово приводится к нижнему регистру прямо при копировании в буфер,
+ * а вместе с ним передаются его границы в исходном тексте.
+ * Словом считается непрерывная последовательность букв от "а" до "я"
+ * в любом регистре, все остальные символы разделяют слова.
+ */
+public class Tokenizer {
+    private static final int CASE_OFFSET = 'а' - 'А';
+
+    private Tokenizer() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * @param token слово в нижнем регистре
+         * @param start индекс первого символа слова в тексте
+         * @param end   индекс символа, следующего за словом
+         */
+        void accept(String token, int start, int end);
+    }
+
+    /**
+     * @return индекс символа, следующего за словом, которое начинается с позиции start
+     */
+    public static int wordEnd(CharSequence text, int start) {
+        int i = start;
+        while (i < text.length() && isLetter(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я');
+    }
+
+    public static void tokenize(CharSequence text, TokenConsumer consumer) {
+        int length = text.length();
+        char[] buffer = new char[32];
+        int size = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 'А' && c <= 'Я') {
+                c += CASE_OFFSET;
+            } else if (c < 'а' || c > 'я') {
+                if (size > 0) {
+                    consumer.accept(new String(buffer, 0, size), start, i);
+                    size = 0;
+                }
+                continue;
+            }
+            if (size == 0) {
+                start = i;
+            } else if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = c;
+        }
+        if (size > 0) {
+            consumer.accept(new String(buffer, 0, size), start, length);
+        }
+    }
+}
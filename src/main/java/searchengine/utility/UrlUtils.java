@@ -0,0 +1,82 @@
+package searchengine.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+public class UrlUtils {
+    private static final Logger logger = LoggerFactory.getLogger(UrlUtils.class);
+
+    private UrlUtils() {
+        throw new RuntimeException("Disallow construct");
+    }
+
+    /**
+     * Приводит адрес к каноническому виду, чтобы одна и та же страница
+     * не попадала в очередь обхода дважды: схема и хост в нижнем регистре,
+     * без фрагмента и порта по умолчанию, пустой путь заменяется на "/".
+     *
+     * @param url абсолютный адрес страницы
+     * @return нормализованный адрес или null, если адрес некорректен
+     */
+    public static String normalize(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (scheme == null || host == null) {
+                return null;
+            }
+            scheme = scheme.toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+                port = -1;
+            }
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            StringBuilder builder = new StringBuilder(url.length())
+                    .append(scheme).append("://").append(host.toLowerCase(Locale.ROOT));
+            if (port != -1) {
+                builder.append(':').append(port);
+            }
+            builder.append(path);
+            if (uri.getRawQuery() != null) {
+                builder.append('?').append(uri.getRawQuery());
+            }
+            return builder.toString();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    public static String extractDomain(String url) {
+        try {
+            URI uri = new URI(url);
+            String host = uri.getHost();
+            if (host != null) {
+                return host;
+            }
+        } catch (URISyntaxException e) {
+            logger.error("Invalid URL: " + url);
+        }
+        return null;
+    }
+
+    public static String extractPath(String url) {
+        try {
+            URI uri = new URI(url);
+            String path = uri.getPath();
+            if (path != null) {
+                return path.isEmpty() ? "/" : path;
+            }
+        } catch (URISyntaxException e) {
+            logger.error("Invalid URL: " + url);
+        }
+        return null;
+    }
+}
@@ -1457,6 +1457,48 @@ var API = function(){
             }
         });
     }
+
+    /**
+     * Поиск через /search/stream: первая строка ответа выводит список страниц,
+     * следующие строки дописывают заголовки и сниппеты по мере готовности
+     */
+    function streamSearch(data, $this) {
+        fetch(backendApiUrl + '/search/stream?' + $.param(data)).then(function(response) {
+            var reader = response.body.getReader(),
+                decoder = new TextDecoder(),
+                buffer = '',
+                $blocks = null;
+            function handle(line) {
+                if (!line) {
+                    return;
+                }
+                var value = JSON.parse(line);
+                if ($blocks === null) {
+                    $blocks = send.search.action(value, $this, data) || $();
+                } else {
+                    var $block = $blocks.eq(value.index);
+                    $block.find('.SearchResult-pageTitle').html(value.title);
+                    $block.find('.SearchResult-description').html(value.snippet);
+                }
+            }
+            function read() {
+                return reader.read().then(function(chunk) {
+                    if (chunk.done) {
+                        handle(buffer);
+                        return;
+                    }
+                    buffer += decoder.decode(chunk.value, {stream: true});
+                    var lines = buffer.split('\n');
+                    buffer = lines.pop();
+                    lines.forEach(handle);
+                    return read();
+                });
+            }
+            return read();
+        }).catch(function(error) {
+            alert('Ошибка ' + error.message);
+        });
+    }
     
     var send = {
         startIndexing:{
@@ -1539,16 +1581,19 @@ var API = function(){
                     }
                     $searchResults.find('.SearchResult-amount').text(result.count);
                     var scroll = $(window).scrollTop();
+                    var $blocks = $();
                     result.data.forEach(function(page){
-                        $content.append('<div class="SearchResult-block">' +
+                        var $block = $('<div class="SearchResult-block">' +
                             '<a href="' + page.site + page.uri +'" target="_blank" class="SearchResult-siteTitle">' +
                                 (!data.siteName ? page.siteName + ' - ': '') +
-                                page.title +
+                                '<span class="SearchResult-pageTitle">' + (page.title || '') + '</span>' +
                             '</a>' +
                             '<div class="SearchResult-description">' +
-                                page.snippet +
+                                (page.snippet || '') +
                             '</div>' +
-                        '</div>')
+                        '</div>');
+                        $content.append($block);
+                        $blocks = $blocks.add($block);
                     });
                     $(window).scrollTop(scroll);
                     $searchResults.addClass('SearchResult_ACTIVE');
@@ -1563,7 +1608,7 @@ var API = function(){
                     } else {
                         $('.SearchResult-footer').addClass('SearchResult-footer_hide')
                     }
-                    
+                    return $blocks;
                 } else {
                     if ($this.next('.API-error').length) {
                         $this.next('.API-error').text(result.error);
@@ -1730,6 +1775,19 @@ var API = function(){
                 send['statistics'].action,
                 $('.Statistics')
             )
+            var suggestTimer;
+            $('#query').on('input', function(){
+                var query = $(this).val();
+                clearTimeout(suggestTimer);
+                suggestTimer = setTimeout(function(){
+                    $.getJSON(backendApiUrl + '/suggest', {query: query, limit: 10}, function(result){
+                        var $list = $('#querySuggestions').empty();
+                        (result.data || []).forEach(function(suggestion){
+                            $list.append($('<option>').attr('value', suggestion.text));
+                        });
+                    });
+                }, 150);
+            });
             var $send = $('[data-send]');
             $send.on('submit click', function(e){
                 var $this = $(this);
@@ -1764,6 +1822,10 @@ var API = function(){
                             break;
         
                     }
+                    if ($this.data('send') === 'search') {
+                        streamSearch(data, $this);
+                        return;
+                    }
                     sendData(
                         send[$this.data('send')].address,
                         send[$this.data('send')].type,
@@ -0,0 +1,163 @@
+package searchengine.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerSettings;
+import searchengine.metrics.CrawlerMetrics;
+import searchengine.metrics.MetricsRegistry;
+import searchengine.repository.projection.PageState;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Загрузчик страниц против встроенного HTTP-сервера на локальном порту.
+ */
+class PageFetcherTest {
+    private static final int MAX_BODY_SIZE = 1024;
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private PageFetcher fetcher;
+    private String base;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/page", exchange -> send(exchange, 200, "text/html; charset=utf-8", "<html><title>Page</title></html>"));
+        server.createContext("/xhtml", exchange -> send(exchange, 200, "application/xhtml+xml", "<html/>"));
+        server.createContext("/file.pdf", exchange -> send(exchange, 200, "application/pdf", "%PDF-1.4"));
+        server.createContext("/moved", redirect(() -> base + "/page"));
+        server.createContext("/away", redirect(() -> "http://127.0.0.1:" + server.getAddress().getPort() + "/page"));
+        server.createContext("/large", exchange -> send(exchange, 200, "text/html", "x".repeat(MAX_BODY_SIZE * 10)));
+        server.createContext("/cached", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            send(exchange, 200, "text/html", "<html/>");
+        });
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort();
+
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFetchThreads(2);
+        settings.setMaxBodySize(MAX_BODY_SIZE);
+        fetcher = new PageFetcher(settings, new CrawlerMetrics(new MetricsRegistry()));
+    }
+
+    @AfterEach
+    void stop() {
+        fetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void followsRedirectOnSameHost() throws Exception {
+        FetchResult result = fetch(base + "/moved");
+
+        assertThat(result.getStatusCode()).isEqualTo(200);
+        assertThat(result.getUrl()).isEqualTo(base + "/page");
+        assertThat(result.parse().title()).isEqualTo("Page");
+    }
+
+    @Test
+    void rejectsRedirectToAnotherHost() {
+        assertThatThrownBy(() -> fetch(base + "/away"))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("Redirected to another host");
+    }
+
+    @Test
+    void cutsOffBodyOverLimit() {
+        assertThatThrownBy(() -> fetch(base + "/large"))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds " + MAX_BODY_SIZE + " bytes");
+    }
+
+    @Test
+    void sendsConditionalRequestAndAcceptsNotModified() throws Exception {
+        FetchResult first = fetch(base + "/cached");
+        assertThat(first.isNotModified()).isFalse();
+        assertThat(first.getEtag()).isEqualTo(ETAG);
+
+        FetchResult second = fetcher.fetch(base + "/cached", state(first.getEtag()))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(second.isNotModified()).isTrue();
+        assertThat(second.getBody()).isEmpty();
+    }
+
+    @Test
+    void treatsOnlyHtmlAndXhtmlAsHtml() throws Exception {
+        assertThat(fetch(base + "/page").isHtml()).isTrue();
+        assertThat(fetch(base + "/xhtml").isHtml()).isTrue();
+        assertThat(fetch(base + "/file.pdf").isHtml()).isFalse();
+    }
+
+    private FetchResult fetch(String url) throws Exception {
+        return fetcher.fetch(url).get(10, TimeUnit.SECONDS);
+    }
+
+    private static HttpHandler redirect(Supplier<String> location) {
+        return exchange -> {
+            exchange.getResponseHeaders().add("Location", location.get());
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        };
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static PageState state(String etag) {
+        return new PageState() {
+            @Override
+            public Integer getId() {
+                return 1;
+            }
+
+            @Override
+            public String getPath() {
+                return "/cached";
+            }
+
+            @Override
+            public String getEtag() {
+                return etag;
+            }
+
+            @Override
+            public String getLastModified() {
+                return null;
+            }
+
+            @Override
+            public String getContentHash() {
+                return null;
+            }
+        };
+    }
+}